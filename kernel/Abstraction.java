@@ -13,10 +13,7 @@ package hlt.language.design.kernel;
 import hlt.language.design.types.*;
 import hlt.language.design.instructions.*;
 
-import hlt.language.util.ObjectToIntMap;
-
 import java.util.AbstractList;
-import java.util.Iterator;
 
 /**
  * This class represents &lambda;-calculus abstractions. More
@@ -29,7 +26,6 @@ import java.util.Iterator;
 public class Abstraction extends Scope
 {
   protected boolean _isExitable = true;
-  private ObjectToIntMap _frame = new ObjectToIntMap();
 
   private int _intFrameSize = 0;
   private int _realFrameSize = 0;
@@ -119,62 +115,38 @@ public class Abstraction extends Scope
       return this;
     }
 
-  public final void addToFrame (Local local)
+  /**
+   * Ensures that the closure frame of this abstraction has at least the specified
+   * size for the specified sort. This is called by an <a href="Enclosure.html">
+   * <tt>Enclosure</tt></a> for each local occurring free in this abstraction, with
+   * the local's offset relative to this abstraction's frame.
+   */
+  final void updateFrameSize (byte sort, int size)
     {
-      _frame.put(local,local.offset());
+      switch (sort)
+        {
+          case Type.INT_SORT:
+            _intFrameSize = Math.max(_intFrameSize,size);
+            break;
+          case Type.REAL_SORT:
+            _realFrameSize = Math.max(_realFrameSize,size);
+            break;
+          case Type.OBJECT_SORT:
+            _objectFrameSize = Math.max(_objectFrameSize,size);
+        }
     }
 
   public final void sanitizeSorts (Enclosure enclosure)
     {
       if (_isSortSanitized) return;
 
-      enclosure.push(this);
+      enclosure.enter(this);
       _body.sanitizeSorts(enclosure);
-      enclosure.pop();
+      enclosure.exit();
 
-      for (Iterator i=_frame.keys(); i.hasNext();)
-        {
-          Local local = (Local)i.next();
-          switch (local.boxSort())
-            {
-              case Type.INT_SORT:
-                _intFrameSize = _maxFrameSize(local,_intFrameSize);
-                break;
-              case Type.REAL_SORT:
-                _realFrameSize = _maxFrameSize(local,_realFrameSize);
-                break;
-              case Type.OBJECT_SORT:
-                _objectFrameSize = _maxFrameSize(local,_objectFrameSize);
-            }
-        }
-
-      _frame = null;    // no more needed: might as well recycle it!
       _isSortSanitized = true;
     }
 
-  private final int _maxFrameSize (Local local, int frameSize)
-    {
-      return Math.max(frameSize,local.offset()-_frame.get(local));
-    }
-
-  public final Expression shiftOffsets (int intShift, int realShift, int objectShift,
-                                        int intDepth, int realDepth, int objectDepth)
-    {
-      boolean bodyHasShifted = false;
-
-      if (bodyHasShifted |= (_intFrameSize > 0)) _intFrameSize += intShift;
-      if (bodyHasShifted |= (_realFrameSize > 0)) _realFrameSize += realShift;
-      if (bodyHasShifted |= (_objectFrameSize > 0)) _objectFrameSize += objectShift;
-
-      if (bodyHasShifted)
-        _body = _body.shiftOffsets(intShift,realShift,objectShift,
-                                   intDepth+_intArity,
-                                   realDepth+_realArity,
-                                   objectDepth+_objectArity);
-
-      return this;
-    }
-
   public final void typeCheck (TypeChecker typeChecker) throws TypingErrorException
     {
       if (typeCheckLocked()) return;
@@ -189,10 +161,63 @@ public class Abstraction extends Scope
         typeChecker.prove(new PopExitableGoal(this));
     }
 
-  protected final PushScope _pushInstruction ()
+  /**
+   * Returns <tt>true</tt> iff this abstraction, applied to the specified
+   * number of arguments, may be compiled as a plain scope. This is the case
+   * when the application is total and the abstraction's body does not contain
+   * any <a href="ExitWithValue.html"><tt>ExitWithValue</tt></a>: the
+   * abstraction then does not escape from the application's frame. So its
+   * parameters and free locals have exactly the same offsets as those of a <a
+   * href="Let.html"><tt>Let</tt></a>'s scope, and no closure needs to be built.
+   * This is never the case if the <tt>scopeAppliedAbstractions</tt> setting
+   * installed for the current thread (see <a href="Settings.html"><tt>Settings</tt></a>)
+   * is <tt>false</tt>.
+   */
+  public final boolean isLocallyApplicable (int arity)
+    {
+      return Settings.current().scopeAppliedAbstractions()
+          && arity == arity()
+          && !(_isExitable && _containsExit(_body));
+    }
+
+  private static final boolean _containsExit (Expression expression)
+    {
+      if (expression instanceof ExitWithValue)
+        return true;
+
+      for (int i=expression.numberOfSubexpressions(); i-->0;)
+        if (_containsExit(expression.subexpression(i)))
+          return true;
+
+      return false;
+    }
+
+  /**
+   * Compiles this abstraction as a plain scope. This must only be called when
+   * <tt>isLocallyApplicable</tt> holds for the application of this abstraction.
+   */
+  public final void compileAsScope (Compiler compiler)
     {
-      return new PushClosure(voidArity(),_intArity,_realArity,_objectArity,
-                             _intFrameSize,_realFrameSize,_objectFrameSize).setIsExitable(_isExitable);
+      int[] frameSizes = { _intFrameSize, _realFrameSize, _objectFrameSize };
+
+      compiler.generate(new PushScope(voidArity(),_intArity,_realArity,_objectArity),_body,
+                        compiler.enterClosure(frameSizes,_intArity,_realArity,_objectArity));
+    }
+
+  /**
+   * Compiles this abstraction as a closure whose frame sizes are adjusted to the
+   * compiler's current frame base.
+   */
+  public final void compile (Compiler compiler)
+    {
+      int[] frameSizes = { _intFrameSize, _realFrameSize, _objectFrameSize };
+      Compiler.FrameBase frameBase
+        = compiler.enterClosure(frameSizes,_intArity,_realArity,_objectArity);
+
+      compiler.generate(new PushClosure(voidArity(),_intArity,_realArity,_objectArity,
+                                        frameSizes[0],frameSizes[1],frameSizes[2])
+                          .setIsExitable(_isExitable),
+                        _body,frameBase);
     }
 
   public final String toString ()
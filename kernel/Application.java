@@ -301,7 +301,11 @@ public class Application extends ProtoExpression
   public final Expression setSubexpression (int n, Expression expression) throws NoSuchSubexpressionException
     {
       if (n == 0)
-        _function = expression;
+        {
+          if (_checkedFunction == _function)
+            _checkedFunction = expression;
+          _function = expression;
+        }
       else
         if (n > 0 && n <= _arguments.length)
           _arguments[n-1] = expression;
@@ -362,7 +366,7 @@ public class Application extends ProtoExpression
   public final void typeCheck (Type type, TypeChecker typeChecker) throws TypingErrorException
     {
       typeCheck(typeChecker);
-      typeChecker.unify(_type,type,this);
+      typeChecker.unify(typeRef(),type,this);
     }
     
   public void typeCheck (TypeChecker typeChecker) throws TypingErrorException
@@ -377,7 +381,7 @@ public class Application extends ProtoExpression
           argumentTypes[i] = _arguments[i].typeRef();
         }
 
-      FunctionType functionType = new FunctionType(argumentTypes,_type).setNoCurrying(_noCurrying);
+      FunctionType functionType = new FunctionType(argumentTypes,typeRef()).setNoCurrying(_noCurrying);
       _function.typeCheck(functionType,typeChecker);
 
       int arity = ((FunctionType)_function.type()).arity();
@@ -452,11 +456,29 @@ public class Application extends ProtoExpression
               compiler.generate(new Apply(functionType).curryObject());
           }
         else
-          {
-            _checkedFunction.compile(compiler);
-            compiler.generate(_checkedFunction instanceof Scope ? new Enter(functionType)
-                                                                : new Apply(functionType));
-          }
+          if (_checkedFunction instanceof Abstraction
+              && ((Abstraction)_checkedFunction).isLocallyApplicable(arity()))
+            {
+              ((Abstraction)_checkedFunction).compileAsScope(compiler);
+              compiler.generate(new Enter(functionType));
+            }
+          else
+            if (_checkedFunction instanceof FrameShift
+                && ((FrameShift)_checkedFunction).isLocallyApplicable(arity()))
+              {
+                ((FrameShift)_checkedFunction).compileAsScope(compiler);
+                compiler.generate(new Enter(functionType));
+              }
+            else
+              {
+                Expression function = _checkedFunction instanceof FrameShift
+                                    ? ((FrameShift)_checkedFunction).expression()
+                                    : _checkedFunction;
+
+                _checkedFunction.compile(compiler);
+                compiler.generate(function instanceof Scope ? new Enter(functionType)
+                                                            : new Apply(functionType));
+              }
 
       _padResultIfNeeded(functionType,compiler);
     }
@@ -882,7 +904,7 @@ public class Application extends ProtoExpression
   protected final void _compileArgument (int i, FunctionType functionType, Compiler compiler)
     {
       if (functionType.domain(i).kind() == Type.FUNCTION)
-        _checkedArguments[i].pad((FunctionType)functionType.domain(i)).compile(compiler);
+        compiler.compilePadded(_checkedArguments[i],(FunctionType)functionType.domain(i));
       else
         _checkedArguments[i].compile(compiler);
 
@@ -963,7 +985,7 @@ public class Application extends ProtoExpression
         }
       
       for (int i=0; i<actualArity; i++)
-        newArguments[i] = _checkedArguments[i].shiftOffsets(ia,ra,oa);
+        newArguments[i] = FrameShift.wrap(_checkedArguments[i],ia,ra,oa);
 
       abstraction.compile(compiler);
     }
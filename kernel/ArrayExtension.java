@@ -253,7 +253,7 @@ public class ArrayExtension extends ProtoExpression
         _elements[i].compile(compiler);
 
       // compile the size
-      compiler.generate(new PushValueInt(size()));
+      compiler.generatePushInt(size());
       
       if (_indexSet == null)
         {
@@ -298,7 +298,7 @@ public class ArrayExtension extends ProtoExpression
         { // need to check that the size of the index set matches the actual size of the array
           if (_indexSet.checkedType().boxSort() == Type.INT_SORT)
             compiler.generate(Instruction.I_TO_O);
-          compiler.generate(new PushValueInt(size()));
+          compiler.generatePushInt(size());
           // leave the index set on the stack if not int and check that its size is respected
           compiler.generate(Instruction.CHECK_ARRAY_SIZE);
         }
@@ -287,9 +287,9 @@ public class ArrayInitializer extends ProtoExpression
             compiler.generate(Instruction.I_TO_O);
         }
       // compile the number of dimensions
-      compiler.generate(new PushValueInt(_dimension.length));
+      compiler.generatePushInt(_dimension.length);
       // compile the number of extension depth
-      compiler.generate(new PushValueInt(_extensionDepth));
+      compiler.generatePushInt(_extensionDepth);
       // generate ARRAY_INITIALIZE
       compiler.generate(Instruction.ARRAY_INITIALIZE);
     }
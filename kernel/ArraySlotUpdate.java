@@ -129,7 +129,7 @@ public class ArraySlotUpdate extends ProtoExpression
 
       // NB: assigning void is prevented by the array slot type-check
 
-      if (VOID_ASSIGNMENTS)
+      if (voidAssignments())
         {
           typeChecker.unify(_slot.typeRef(),_value.typeRef());
           typeChecker.typeCheck(this,Type.VOID);
@@ -182,7 +182,7 @@ public class ArraySlotUpdate extends ProtoExpression
                                       isIntIndexed,
                                       sort));
 
-      if (VOID_ASSIGNMENTS)
+      if (voidAssignments())
         compiler.generateStackPop(sort);
     }
 
@@ -80,15 +80,15 @@ public abstract class Assignment extends ProtoExpression
     {
       if (typeCheckLocked()) return;
 
-      Type type = VOID_ASSIGNMENTS ? _rhs.typeRef() : _type;
+      Type type = voidAssignments() ? _rhs.typeRef() : typeRef();
 
       _lhs.typeCheck(type,typeChecker);
       _rhs.typeCheck(type,typeChecker);
 
       typeChecker.disallowVoid(type.value(),this,"assigned value");
 
-      if (VOID_ASSIGNMENTS)
-        typeChecker.unify(_type,Type.VOID,this);
+      if (voidAssignments())
+        typeChecker.unify(typeRef(),Type.VOID,this);
     }
 
   public final String toString ()
@@ -44,7 +44,7 @@ public class BuiltinObjectConstant extends Constant
 
   public final void compile (Compiler compiler)
     {
-      compiler.generate(new PushValueObject(_value));
+      compiler.generatePushObject(_value);
     }
 
   public boolean equals (Object other)
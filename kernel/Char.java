@@ -42,7 +42,7 @@ public class Char extends Constant
 
   public final void compile (Compiler compiler)
     {
-      compiler.generate(new PushValueInt(_value));
+      compiler.generatePushInt(_value);
     }
 
   public final boolean equals (Object other)
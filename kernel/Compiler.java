@@ -16,7 +16,12 @@ import hlt.language.design.instructions.*;
 import hlt.language.util.Queue;
 import hlt.language.util.ArrayList;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * This is the class defining a compiler object. Such an object serves as
@@ -37,14 +42,55 @@ import java.util.HashSet;
  * href="../types/DefinedEntry.html"><tt>DefinedEntry</tt></a> object encapsulating
  * its code entry point (which may then be used to access the defined
  * symbol's code for execution).
+ *
+ * <p>
+ *
+ * A compiler's state is that of the compilation in progress, and so a compiler
+ * must be used by one thread at a time; compiling on several threads at once
+ * requires one compiler per thread. Each compiler has its own <a
+ * href="Settings.html"><tt>Settings</tt></a>, so that compilers on different
+ * threads may use different ones. On the other hand, the code array of a
+ * complete compilation is never modified once <tt>compile</tt> has returned: all
+ * its instructions' addresses and reference codes are set before it is extracted
+ * or installed in a code entry, and the constant push instructions and padded
+ * closures a compiler shares among its code arrays are immutable once generated.
+ * Hence, compiled code may be executed by any number of threads, provided it is
+ * handed over to them through some synchronization (<i>e.g.</i>, submitting a task
+ * to an executor) that makes the compiling thread's writes visible to them.
  */
 public class Compiler
 {
   /**
-   * Creates and returns a new Compiler.
+   * Creates and returns a new Compiler with settings initialized from the
+   * global defaults.
    */
   public Compiler ()
     {
+      this(new Settings());
+    }
+
+  /**
+   * Creates and returns a new Compiler with the specified settings.
+   */
+  public Compiler (Settings settings)
+    {
+      _settings = settings;
+    }
+
+  /**
+   * Creates and returns a new Compiler for compiling an expression on behalf of
+   * the specified compiler: it shares its settings, constant pools and padded
+   * closures, which it leaves for the specified compiler to empty.
+   */
+  private Compiler (Compiler parent)
+    {
+      _settings = parent._settings;
+      _paddedClosures = parent._paddedClosures;
+      _sharedScopes = parent._sharedScopes;
+      _intConstants = parent._intConstants;
+      _realConstants = parent._realConstants;
+      _objectConstants = parent._objectConstants;
+      _inUnit = true;
     }
 
   /**
@@ -112,9 +158,97 @@ public class Compiler
   private HashSet _targets = new HashSet();
 
   /**
-   * When this flag is set to <tt>true</tt>, last call optimization is made effective.
+   * When this flag is set to <tt>true</tt>, last call optimization is made effective
+   * by the compilers whose <a href="Settings.html"><tt>Settings</tt></a> have not
+   * been set otherwise explicitly (see <tt>setLCO</tt>).
+   */
+  public static volatile boolean LCO_IS_EFFECTIVE = false;
+
+  /**
+   * These are this compiler's settings.
+   */
+  private Settings _settings;
+
+  /**
+   * With this retention policy, a compiled definition keeps its typed body.
+   */
+  public static final int RETAIN_TYPED_TREES = 0;
+
+  /**
+   * With this retention policy, a compiled definition drops its typed body (see
+   * <a href="Definition.html#releaseBody()"><tt>Definition.releaseBody</tt></a>)
+   * once its code has been installed in its code entry.
+   */
+  public static final int RELEASE_TYPED_TREES = 1;
+
+  /**
+   * The number of definitions whose typed bodies this compiler has released.
+   */
+  private int _releasedDefinitions = 0;
+
+  /**
+   * The total number of expression nodes in the typed bodies this compiler has
+   * released.
+   */
+  private long _releasedNodes = 0;
+
+  /**
+   * This maps the code entry of a global function to a map from the sort
+   * signatures at which it has been padded to the <tt>PushScope</tt>
+   * instruction building the corresponding padded closure. Like the constant
+   * pools, it is emptied at the end of each compilation unit.
+   */
+  private IdentityHashMap _paddedClosures = new IdentityHashMap();
+
+  /**
+   * These are this compiler's constant pools: they map each constant value
+   * pushed by code compiled by this compiler to the unique instruction pushing
+   * it. They only deduplicate these instruction objects: each use of a constant
+   * still has its own push in the code. They are keyed by value (and, for
+   * objects, which are pooled only if immutable, by class as well), and are
+   * kept for the length of a compilation unit (see <tt>beginUnit</tt>), so that
+   * all the definitions of a same unit share the same push instructions for
+   * equal constants. They are emptied automatically at the end of each unit.
+   */
+  private HashMap _intConstants = new HashMap();
+  private HashMap _realConstants = new HashMap();
+  private HashMap _objectConstants = new HashMap();
+
+  /**
+   * This is <tt>true</tt> between a call to <tt>beginUnit</tt> and the matching
+   * call to <tt>endUnit</tt>.
    */
-  public static boolean LCO_IS_EFFECTIVE = false;
+  private boolean _inUnit = false;
+
+  /**
+   * Contains the shared padded closure instructions, whose reference code
+   * is that of their own compilation and must not be reset.
+   */
+  private HashSet _sharedScopes = new HashSet();
+
+  /**
+   * The defined entries called by the code being compiled.
+   */
+  private HashSet _callees = new HashSet();
+
+  /**
+   * This is <tt>true</tt> when the code being compiled includes inlined code
+   * whose effects are unknown (see <tt>mayAssignGlobals</tt>).
+   */
+  private boolean _hasUnknownEffects = false;
+
+  /**
+   * This maps each code array compiled by any compiler to its <tt>Effects</tt>.
+   * Code arrays hash by identity, and are only weakly held.
+   */
+  private static final Map _EFFECTS = Collections.synchronizedMap(new WeakHashMap());
+
+  /**
+   * This is the frame base in the context of which the expression being compiled
+   * is compiled, or <tt>null</tt> if no frame shift applies to it (which is the
+   * common case). See <a href="FrameShift.html"><tt>FrameShift</tt></a>.
+   */
+  private FrameBase _frameBase;
     
   /**
    * Resets this compiler's attributes to enable a new compilation.
@@ -125,6 +259,9 @@ public class Compiler
       _targets.clear();
       _code = null;   
       _codeEnd = 0;   
+      _frameBase = null;
+      _callees.clear();
+      _hasUnknownEffects = false;
     }
 
   /**
@@ -208,17 +345,109 @@ public class Compiler
    */
   public final void compile (Expression exp)
     {
-      _reset();
+      Settings previous = Settings.install(_settings);
+
+      try
+        {
+          _reset();
 
-      exp.compile(this);
-      _backpatch();
+          exp.compile(this);
+          _backpatch();
 
-      if (isCompilingDefinition())
-        _releaseCodeEntry();
+          _EFFECTS.put(_code,new Effects(_code,_callees,_hasUnknownEffects));
 
-      if (_showCode) showCode();
+          if (isCompilingDefinition())
+            _releaseCodeEntry();
 
-      _codeEntry = null;
+          if (_showCode) showCode();
+
+          if (_codeEntry != null && _settings.retention() == RELEASE_TYPED_TREES
+              && exp instanceof Definition && ((Definition)exp).releaseBody())
+            {
+              _releasedDefinitions++;
+              _releasedNodes += ((Definition)exp).releasedSize();
+            }
+
+          _codeEntry = null;
+
+          if (!_inUnit)
+            clearConstantPools();
+        }
+      finally
+        {
+          Settings.install(previous);
+        }
+    }
+
+  /**
+   * Starts a compilation unit: until the matching <tt>endUnit</tt>, the
+   * expressions compiled by this compiler share its constant pools. Outside of
+   * a unit, each compiled expression is a unit of its own.
+   */
+  public final void beginUnit ()
+    {
+      _inUnit = true;
+    }
+
+  /**
+   * Ends the current compilation unit, emptying this compiler's constant pools.
+   */
+  public final void endUnit ()
+    {
+      _inUnit = false;
+      clearConstantPools();
+    }
+
+  /**
+   * Returns this compiler's settings, which it installs for the current thread
+   * while it compiles (see <a href="Settings.html#current()"><tt>Settings.current</tt></a>).
+   */
+  public final Settings settings ()
+    {
+      return _settings;
+    }
+
+  public final boolean isLCOEffective ()
+    {
+      return _settings.lcoIsEffective();
+    }
+
+  public final Compiler setLCO (boolean flag)
+    {
+      _settings.setLCO(flag);
+      return this;
+    }
+
+  public final int retention ()
+    {
+      return _settings.retention();
+    }
+
+  /**
+   * Sets this compiler's retention policy. Releasing typed trees is opt-in, since
+   * a released definition may no longer be copied, type-checked, nor compiled.
+   */
+  public final Compiler setRetention (int retention)
+    {
+      _settings.setRetention(retention);
+      return this;
+    }
+
+  /**
+   * Returns the number of definitions whose typed bodies this compiler has released.
+   */
+  public final int releasedDefinitions ()
+    {
+      return _releasedDefinitions;
+    }
+
+  /**
+   * Returns the total number of expression nodes in the typed bodies this compiler
+   * has released - an estimate of the heap it has made reclaimable.
+   */
+  public final long releasedNodes ()
+    {
+      return _releasedNodes;
     }
 
   /**
@@ -243,11 +472,12 @@ public class Compiler
         {
           ScopeBody cb = (ScopeBody)_pushScopeQueue.pop();
           cb.pushScope.setAddress(nextCodeAddress());
+          _frameBase = cb.frameBase;
           cb.body.compile(this);
 
           Instruction previous = lastInstruction();
 
-          if (LCO_IS_EFFECTIVE && !_isTarget(_codeEnd)
+          if (_settings.lcoIsEffective() && !_isTarget(_codeEnd)
               && !cb.pushScope.isExitable()
               && previous instanceof Enter)
             {
@@ -273,6 +503,7 @@ public class Compiler
               }
         }
 
+      _frameBase = null;
       _extractCode();
       return this;
     }
@@ -290,7 +521,7 @@ public class Compiler
       for (int i=0; i<_code.length; i++)
         {
           _code[i] = (Instruction)_codeList.get(i);
-          if (_code[i] instanceof PushScope)
+          if (_code[i] instanceof PushScope && !_sharedScopes.contains(_code[i]))
             _code[i] = ((PushScope)_code[i]).setReferenceCode(_code);
         }
     }
@@ -395,14 +626,374 @@ public class Compiler
       return inst;
     }        
 
-  public final Instruction generate (PushScope pushScope, Expression body)
+  /**
+   * Generates the specified <tt>PushScope</tt> instruction, and records the specified
+   * body to be compiled in the context of the specified frame base (as returned by
+   * <tt>enterScope</tt> or <tt>enterClosure</tt>).
+   */
+  public final Instruction generate (PushScope pushScope, Expression body, FrameBase frameBase)
     {
-      _pushScopeQueue.push(new ScopeBody(pushScope,body,_codeEnd));
+      _pushScopeQueue.push(new ScopeBody(pushScope,body,frameBase,_codeEnd));
       return generate(pushScope); // NB: its reference code array will be set in _backpatch
     }
 
+  /**
+   * Generates the specified <tt>PushScope</tt> instruction for a body that is not
+   * subject to any frame shift.
+   */
+  public final Instruction generate (PushScope pushScope, Expression body)
+    {
+      return generate(pushScope,body,null);
+    }
+
+  /**
+   * Compiles the specified expression with the offsets of the locals it refers to
+   * (outside of the scopes it contains) shifted by the specified amounts per sort.
+   */
+  final void compileShifted (Expression expression,
+                             int intShift, int realShift, int objectShift)
+    {
+      FrameBase frameBase = _frameBase;
+      _frameBase = new FrameBase(intShift,realShift,objectShift,_frameBase);
+      expression.compile(this);
+      _frameBase = frameBase;
+    }
+
+  /**
+   * Compiles the specified abstraction as a plain scope (see <tt>Abstraction.compileAsScope</tt>)
+   * with the same shifts as those of <tt>compileShifted</tt>.
+   */
+  final void compileShiftedAsScope (Abstraction abstraction,
+                                    int intShift, int realShift, int objectShift)
+    {
+      FrameBase frameBase = _frameBase;
+      _frameBase = new FrameBase(intShift,realShift,objectShift,_frameBase);
+      abstraction.compileAsScope(this);
+      _frameBase = frameBase;
+    }
+
+  /**
+   * Returns the actual offset of a local of the specified sort and sanitized offset in
+   * the current frame base.
+   */
+  public final int offset (byte sort, int offset)
+    {
+      if (_frameBase == null)
+        return offset;
+
+      int s = FrameBase.index(sort);
+
+      for (FrameBase base = _frameBase; base != null; base = base.next)
+        if (offset >= base.depth[s])
+          offset += base.shift[s];
+
+      return offset;
+    }
+
+  /**
+   * Returns the frame base in which to compile the body of a scope with the specified
+   * arities (per sort) in the current frame base.
+   */
+  public final FrameBase enterScope (int intArity, int realArity, int objectArity)
+    {
+      return _enter(_frameBase,intArity,realArity,objectArity);
+    }
+
+  private static final FrameBase _enter (FrameBase base,
+                                         int intArity, int realArity, int objectArity)
+    {
+      if (base == null)
+        return null;
+
+      return new FrameBase(base,intArity,realArity,objectArity,
+                           _enter(base.next,intArity,realArity,objectArity));
+    }
+
+  /**
+   * Adjusts the specified frame sizes (per sort) of a closure with the specified arities
+   * (per sort) to the current frame base, and returns the frame base in which to compile
+   * the closure's body. Each frame shift (innermost first) enlarges the non-empty frames
+   * of the closure, and applies to its body only if the closure has a non-empty frame.
+   */
+  public final FrameBase enterClosure (int[] frameSizes,
+                                       int intArity, int realArity, int objectArity)
+    {
+      return _enterClosure(_frameBase,frameSizes,intArity,realArity,objectArity);
+    }
+
+  private static final FrameBase _enterClosure (FrameBase base, int[] frameSizes,
+                                                int intArity, int realArity, int objectArity)
+    {
+      if (base == null)
+        return null;
+
+      boolean isShifted = false;
+
+      // NB: once a frame is found non-empty, the following ones are enlarged as well
+      if (isShifted |= (frameSizes[0] > 0)) frameSizes[0] += base.shift[0];
+      if (isShifted |= (frameSizes[1] > 0)) frameSizes[1] += base.shift[1];
+      if (isShifted |= (frameSizes[2] > 0)) frameSizes[2] += base.shift[2];
+
+      FrameBase next = _enterClosure(base.next,frameSizes,intArity,realArity,objectArity);
+
+      return isShifted ? new FrameBase(base,intArity,realArity,objectArity,next) : next;
+    }
+
+  /**
+   * Compiles the specified expression, which has a function type, padded as
+   * needed to be passed where the specified formal function type is expected
+   * (see <a href="Expression.html#pad"><tt>Expression.pad</tt></a>). When the
+   * expression is a global whose code entry is a builtin or a non-inlinable
+   * definition, the padding wrapper is closed and depends only on the entry
+   * and on the sorts of the actual and formal types. It is then compiled only
+   * once per compilation unit, in its own code array, and the instruction
+   * building the padded closure is shared by all the code of the unit that pads
+   * this global at the same sort signature. This saves code size only: the
+   * padded closure is still built, and its arguments (un)wrapped, each time the
+   * code runs. <b>NB:</b> this is never done when compiling a definition, as
+   * whether its code may be inlined - which relocates the closure instructions
+   * of the inlined code against its own code array - is not settled until it
+   * has been compiled.
+   */
+  public final void compilePadded (Expression function, FunctionType formalType)
+    {
+      FunctionType actualType = (FunctionType)function.checkedType();
+
+      if (!Expression.needsPadding(formalType,actualType))
+        {
+          function.compile(this);
+          return;
+        }
+
+      if (!_settings.sharePaddedClosures() || !_isShareable(function)
+          || isCompilingDefinition())
+        {
+          function.pad(formalType).compile(this);
+          return;
+        }
+
+      CodeEntry entry = ((Global)function).checkedCodeEntry();
+      HashMap closures = (HashMap)_paddedClosures.get(entry);
+      if (closures == null)
+        _paddedClosures.put(entry,closures = new HashMap());
+
+      String signature = _sortSignature(formalType,actualType);
+      Instruction closure = (Instruction)closures.get(signature);
+
+      if (closure == null)
+        {
+          Compiler compiler = new Compiler(this);
+          compiler.compile(function.pad(formalType));
+          closures.put(signature,closure = compiler.code()[0]);
+          _sharedScopes.add(closure);
+        }
+
+      if (entry instanceof DefinedEntry)
+        noteCall((DefinedEntry)entry);
+
+      generate(closure);
+    }
+
+  /**
+   * Records that the code being compiled calls the specified defined entry. This
+   * is called by a <a href="Global.html"><tt>Global</tt></a> when it generates a
+   * <tt>Call</tt> instruction.
+   */
+  public final void noteCall (DefinedEntry entry)
+    {
+      _callees.add(entry);
+    }
+
+  /**
+   * Returns <tt>true</tt> unless the specified code is known not to assign any
+   * global, either directly or through the code of the defined entries it calls,
+   * transitively. This is conservative: code that was not compiled by a compiler,
+   * or that calls an entry whose code is not known (<i>e.g.</i>, not compiled yet),
+   * is deemed to assign globals as soon as it contains a <tt>Call</tt>.
+   */
+  public static final boolean mayAssignGlobals (Instruction[] code)
+    {
+      return _mayAssignGlobals(code,new IdentityHashMap());
+    }
+
+  private static final boolean _mayAssignGlobals (Instruction[] code, IdentityHashMap visited)
+    {
+      if (code == null)
+        return true;
+
+      if (visited.put(code,code) != null)
+        return false;
+
+      Effects effects = (Effects)_EFFECTS.get(code);
+
+      if (effects == null)
+        {
+          for (int i=code.length; i-->0;)
+            if (code[i] instanceof SetGlobal || code[i] instanceof Call)
+              return true;
+
+          return false;
+        }
+
+      if (effects.assignsGlobals || effects.hasUnknownEffects)
+        return true;
+
+      for (int i=effects.callees.length; i-->0;)
+        if (_mayAssignGlobals(((DefinedEntry)effects.callees[i]).code(),visited))
+          return true;
+
+      return false;
+    }
+
+  /**
+   * This records whether a compiled code array assigns globals itself, and the
+   * defined entries it calls.
+   */
+  private static final class Effects
+    {
+      boolean assignsGlobals;
+      boolean hasUnknownEffects;
+      Object[] callees;
+
+      Effects (Instruction[] code, HashSet callees, boolean hasUnknownEffects)
+        {
+          for (int i=code.length; i-->0 && !assignsGlobals;)
+            assignsGlobals = code[i] instanceof SetGlobal;
+
+          this.callees = callees.toArray();
+          this.hasUnknownEffects = hasUnknownEffects;
+        }
+    }
+
+  private static final boolean _isShareable (Expression function)
+    {
+      if (!(function instanceof Global))
+        return false;
+
+      CodeEntry entry = ((Global)function).checkedCodeEntry();
+
+      return entry != null
+          && (entry.isBuiltIn() || !((DefinedEntry)entry).isInlinable());
+    }
+
+  /**
+   * Returns a string identifying the padding needed to pass a function of the
+   * specified actual type where the specified formal type is expected: the
+   * actual type followed by, for each argument and the result, whether it is
+   * wrapped (<tt>w</tt>), unwrapped (<tt>u</tt>), or passed as is (its box sort).
+   */
+  private static final String _sortSignature (FunctionType formalType, FunctionType actualType)
+    {
+      StringBuilder buf = new StringBuilder(actualType.toString()).append('|');
+
+      for (int i=0; i<actualType.arity(); i++)
+        buf.append(formalType.mustWrapArgument(actualType,i)   ? "w"
+                 : formalType.mustUnwrapArgument(actualType,i) ? "u"
+                 : String.valueOf(actualType.domain(i).boxSort()));
+
+      return buf.append('|')
+                .append(formalType.mustWrapResult(actualType)   ? "w"
+                      : formalType.mustUnwrapResult(actualType) ? "u"
+                      : String.valueOf(actualType.range().boxSort()))
+                .toString();
+    }
+
+  /**
+   * Generates the pooled instruction pushing the specified int value.
+   */
+  public final Instruction generatePushInt (int value)
+    {
+      Integer key = Integer.valueOf(value);
+      Instruction push = (Instruction)_intConstants.get(key);
+
+      if (push == null)
+        _intConstants.put(key,push = new PushValueInt(value));
+
+      return generate(push);
+    }
+
+  /**
+   * Generates the pooled instruction pushing the specified real value.
+   */
+  public final Instruction generatePushReal (double value)
+    {
+      Double key = Double.valueOf(value);
+      Instruction push = (Instruction)_realConstants.get(key);
+
+      if (push == null)
+        _realConstants.put(key,push = new PushValueReal(value));
+
+      return generate(push);
+    }
+
+  /**
+   * Generates the instruction pushing the specified object. Only instances of
+   * immutable value classes (strings and boxed primitives) are pooled, by class
+   * and value, so that only equal objects of the same class share a push
+   * instruction; any other object may be mutated through one of its occurrences,
+   * so it gets a push instruction of its own.
+   */
+  public final Instruction generatePushObject (Object value)
+    {
+      if (!_isImmutableValue(value))
+        return generate(new PushValueObject(value));
+
+      HashMap pool = (HashMap)_objectConstants.get(value.getClass());
+
+      if (pool == null)
+        _objectConstants.put(value.getClass(),pool = new HashMap());
+
+      Instruction push = (Instruction)pool.get(value);
+
+      if (push == null)
+        pool.put(value,push = new PushValueObject(value));
+
+      return generate(push);
+    }
+
+  /**
+   * Returns <tt>true</tt> iff the specified object is an instance of an immutable
+   * value class whose equal instances are interchangeable.
+   */
+  private static final boolean _isImmutableValue (Object value)
+    {
+      return value instanceof String
+          || value instanceof Integer
+          || value instanceof Long
+          || value instanceof Double
+          || value instanceof Float
+          || value instanceof Short
+          || value instanceof Byte
+          || value instanceof Character
+          || value instanceof Boolean;
+    }
+
+  /**
+   * Empties this compiler's constant pools, as well as its shared padded
+   * closures (see <tt>compilePadded</tt>).
+   */
+  public final void clearConstantPools ()
+    {
+      _intConstants.clear();
+      _realConstants.clear();
+      _objectConstants.clear();
+      _paddedClosures.clear();
+      _sharedScopes.clear();
+    }
+
   public final void inline (Instruction[] code)
     {
+      Effects effects = (Effects)_EFFECTS.get(code);
+
+      if (effects == null)
+        _hasUnknownEffects = true;
+      else
+        {
+          _hasUnknownEffects |= effects.hasUnknownEffects;
+          for (int i=effects.callees.length; i-->0;)
+            _callees.add(effects.callees[i]);
+        }
+
       for (int i=0; i<code.length; i++)
         {
           if (code[i] == Instruction.END)
@@ -509,11 +1100,55 @@ public class Compiler
     {
       PushScope pushScope;
       Expression body;
+      FrameBase frameBase;
 
-      ScopeBody (PushScope pushScope, Expression body, int address)
+      ScopeBody (PushScope pushScope, Expression body, FrameBase frameBase, int address)
         {
           this.pushScope = pushScope;
           this.body = body;
+          this.frameBase = frameBase;
+        }
+    }
+
+  /**
+   * A frame base is an immutable list of frame shifts, innermost first. Each
+   * records the amount (per sort) by which to shift the offset of a local, and
+   * the depth (per sort) of the scopes entered since the shift was introduced:
+   * only the locals whose offsets reach beyond this depth are shifted.
+   */
+  public static final class FrameBase
+    {
+      final int[] shift;
+      final int[] depth;
+      final FrameBase next;
+
+      FrameBase (int intShift, int realShift, int objectShift, FrameBase next)
+        {
+          shift = new int[] { intShift, realShift, objectShift };
+          depth = new int[3];
+          this.next = next;
+        }
+
+      FrameBase (FrameBase base, int intArity, int realArity, int objectArity, FrameBase next)
+        {
+          shift = base.shift;
+          depth = new int[] { base.depth[0]+intArity,
+                              base.depth[1]+realArity,
+                              base.depth[2]+objectArity };
+          this.next = next;
+        }
+
+      static final int index (byte sort)
+        {
+          switch (sort)
+            {
+            case Type.INT_SORT:
+              return 0;
+            case Type.REAL_SORT:
+              return 1;
+            default:
+              return 2;
+            }
         }
     }
 }
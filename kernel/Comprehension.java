@@ -19,6 +19,7 @@ import hlt.language.util.ArrayList;
 
 import java.util.AbstractList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -44,7 +45,15 @@ import java.util.Map;
 
 public class Comprehension extends ProtoExpression
 {
-  public static boolean OPAQUE_PARAMETERS = true;
+  /**
+   * When this flag is set to <tt>true</tt>, a generator's pattern that is a plain
+   * name is a new (opaque) parameter hiding any homonymous one to its left;
+   * otherwise, it is substituted like any other pattern. <b>NB:</b> patterns are
+   * desugared according to the setting installed for the current thread, which
+   * is this flag's current value unless it has been set explicitly on the installed
+   * <a href="Settings.html"><tt>Settings</tt></a>.
+   */
+  public static volatile boolean OPAQUE_PARAMETERS = true;
 
   protected Tables _tables;
   protected RawInfo _raw;
@@ -265,7 +274,7 @@ public class Comprehension extends ProtoExpression
             _substituteQualifiers(index+1,substitution);
           else
             // this is a generator - must check whether pattern is an opaque parameter
-            if (pattern instanceof Parameter || (pattern instanceof Dummy && OPAQUE_PARAMETERS))
+            if (pattern instanceof Parameter || (pattern instanceof Dummy && Settings.current().opaqueParameters()))
               {
                 // this is an opaque parameter - it is removed from the substitution
                 // before proceeding further to the right, and reinstated afterwards
@@ -389,11 +398,12 @@ public class Comprehension extends ProtoExpression
    *
    * <p>
    *
-   * In <tt>OPAQUE_PARAMETERS</tt> mode (the default), an outer pattern consisting
+   * In <tt>opaqueParameters</tt> mode (the default - see <a href="Settings.html">
+   * <tt>Settings</tt></a>), an outer pattern consisting
    * of just an identifier is always considered new and creates an opaque scope for
    * its free occurrences in the qualifier expressions lying on its right as well
    * as for the main expression of the comprehension. If on the other hand
-   * <tt>OPAQUE_PARAMETERS</tt> is <tt>false</tt>, such an identifier is deemed
+   * <tt>opaqueParameters</tt> is <tt>false</tt>, such an identifier is deemed
    * sensitive to its namesakes in the substitution and global scalar (<i>i.e.</i>,
    * non-functional) definitions. Then, it will be considered a repeated or
    * interpreted occurrence, whichever the case may be.
@@ -414,7 +424,7 @@ public class Comprehension extends ProtoExpression
           variable = (Dummy)pattern;
           parameter = new Parameter(variable);
 
-          if (!OPAQUE_PARAMETERS)
+          if (!Settings.current().opaqueParameters())
             {
               IndexedExpression value = (IndexedExpression)substitution.get(variable.name());
 
@@ -428,7 +438,7 @@ public class Comprehension extends ProtoExpression
                   variable = new Dummy(parameter = new Parameter(value.expression.typeRef()));
                   _raw.expressions.add(new Application(_tables.equality(),
                                                        variable,
-                                                       value.expression.typedCopy()));
+                                                       value.expression.sharedCopy()));
                 }
             }
 
@@ -508,7 +518,7 @@ public class Comprehension extends ProtoExpression
             // it is a repeated occurrence or a global scalar - generate an equality filter
             _raw.expressions.add(new Application(_tables.equality(),
                                                  projection,
-                                                 variable.typedCopy()));
+                                                 variable.sharedCopy()));
 
           return;
         }
@@ -686,7 +696,7 @@ public class Comprehension extends ProtoExpression
       // this qualifier is then a filter - unnest it as far as it can go
       while (index > 0)
         if (qualifiers[index-1].isGenerator())
-          if (qualifier.expression.containsFreeName(qualifiers[index-1].parameter.name()))
+          if (qualifier.containsFreeName(qualifiers[index-1].parameter.name()))
             { // collect if selector, or slicing with no selectors; else, leave the filter there
               if (qualifier.isSelector(qualifiers[index-1].parameter))
                 {
@@ -709,7 +719,7 @@ public class Comprehension extends ProtoExpression
             }
         else // qualifiers[index-1] is a filter
           if (index > 1) // if qualifiers[index-2] exists, it must contain a generator
-            if (!qualifier.expression.containsFreeName(qualifiers[index-2].parameter.name()))
+            if (!qualifier.containsFreeName(qualifiers[index-2].parameter.name()))
               { // move this filter over two steps to the left
                 qualifiers[index] = qualifiers[index-1];
                 qualifiers[index-1] = qualifiers[index-2];
@@ -724,22 +734,20 @@ public class Comprehension extends ProtoExpression
                       && qualifier.isSlicing(qualifiers[index-2].parameter))
                     qualifiers[index-2].addSlicing(qualifier.expression);
                   else // merge this filter with the previous one using an 'and'
-                    qualifiers[index-1].expression = new And(qualifiers[index-1].expression,
-                                                             qualifier.expression);
+                    qualifiers[index-1].and(qualifier);
                 _eraseQualifier(index,upperLimit,qualifiers);
                 return; // this is as far as it can go
               }
           else // unnest further up, or merge this filter into the previous one using an 'and'
             {
-              if (!_isFurtherUnnestable(qualifier.expression))
-                qualifiers[index-1].expression = new And(qualifiers[index-1].expression,
-                                                         qualifier.expression);
+              if (!_isFurtherUnnestable(qualifier))
+                qualifiers[index-1].and(qualifier);
               _eraseQualifier(index,upperLimit,qualifiers);
               return; // this is as far as it can go
             }
 
       // index == 0
-      if (_isFurtherUnnestable(qualifier.expression))
+      if (_isFurtherUnnestable(qualifier))
         _eraseQualifier(index,upperLimit,qualifiers);      
     }
 
@@ -750,7 +758,7 @@ public class Comprehension extends ProtoExpression
    * comprehension is of same nature as this one, adds the filter to that comprehension,
    * and returns <tt>true</tt>; otherwise, returns <tt>false</tt>.
    */
-  private final boolean _isFurtherUnnestable (Expression filter)
+  private final boolean _isFurtherUnnestable (Qualifier filter)
     {
       Expression enclosingScope = _enclosingScope;
 
@@ -761,7 +769,7 @@ public class Comprehension extends ProtoExpression
               Comprehension comp = (Comprehension)enclosingScope;
               if (operation().equals(comp.operation()) && identity().equals(comp.identity()))
                 {
-                  comp.addFilter(filter);
+                  comp.addFilter(filter.expression);
                   return true;
                 }
 
@@ -933,12 +941,12 @@ public class Comprehension extends ProtoExpression
 
       if (!(_construct instanceof Let))
         {
-          _construct.typeCheck(_type,typeChecker);
+          _construct.typeCheck(typeRef(),typeChecker);
           return;
         }
 
       Let let = (Let)_construct;
-      let.setType(_type);
+      let.setType(typeRef());
 
       Scope scope = (Scope)let.function();
       typeChecker.unify(scope.parameter(0).typeRef(),operation().typeRef(),this);
@@ -1038,12 +1046,12 @@ public class Comprehension extends ProtoExpression
 
       final Expression op ()
         {
-          return operation.typedCopy();
+          return operation.sharedCopy();
         }
 
       final public Expression id ()
         {
-          return identity.typedCopy();
+          return identity.sharedCopy();
         }
 
       public final String toString ()
@@ -1099,6 +1107,45 @@ public class Comprehension extends ProtoExpression
       public ArrayList slicings;
       public ArrayList selectors;
 
+      /**
+       * The names occurring free in <tt>_freeNamesExpression</tt>; these are
+       * computed once and kept as long as this qualifier's expression stays
+       * the same.
+       */
+      private HashSet _freeNames;
+      private Expression _freeNamesExpression;
+
+      final HashSet freeNames ()
+        {
+          if (_freeNamesExpression != expression)
+            {
+              _freeNames = expression.freeNames();
+              _freeNamesExpression = expression;
+            }
+
+          return _freeNames;
+        }
+
+      final boolean containsFreeName (String name)
+        {
+          return freeNames().contains(name);
+        }
+
+      /**
+       * Merges the specified filter into this one using an 'and', whose free names are
+       * those of both filters.
+       */
+      final void and (Qualifier filter)
+        {
+          HashSet names = new HashSet(freeNames());
+          names.addAll(filter.freeNames());
+
+          expression = new And(expression,filter.expression);
+
+          _freeNames = names;
+          _freeNamesExpression = expression;
+        }
+
       public Qualifier (Parameter parameter, Expression expression)
         {
           this.parameter = parameter;
@@ -175,6 +175,7 @@ public class Constant extends ProtoExpression
             return;
           }
 
+      // the value pushed is this very node, hence not worth pooling:
       compiler.generate(new PushValueObject(this));
     }
 
@@ -25,6 +25,12 @@ public class Definition extends ProtoExpression
   private boolean _isProjection = false;
   private boolean _isSetOnEvaluation = false;
 
+  /**
+   * When the body has been released, this is the number of expression nodes it
+   * had; it is <tt>0</tt> otherwise.
+   */
+  private int _releasedSize = 0;
+
   public Definition (Symbol symbol, Expression body)
     {
       _symbol = symbol;
@@ -61,6 +67,7 @@ public class Definition extends ProtoExpression
 
   public final Expression copy ()
     {
+      _checkNotReleased("copy");
       Definition copy = new Definition(_symbol,_body.copy());
       copy._codeEntry = _codeEntry;
       copy._isField = _isField;
@@ -71,6 +78,7 @@ public class Definition extends ProtoExpression
 
   public final Expression typedCopy ()
     {
+      _checkNotReleased("copy");
       Definition copy = (Definition)new Definition(_symbol,_body.typedCopy()).addTypes(this);
       copy._codeEntry = _codeEntry;
       copy._isField = _isField;
@@ -79,14 +87,17 @@ public class Definition extends ProtoExpression
       return copy;
     }
 
+  /**
+   * <b>NB:</b> a definition whose body has been released has no subexpression.
+   */
   public final int numberOfSubexpressions ()
     {
-      return 1;
+      return _body == null ? 0 : 1;
     }
 
   public final Expression subexpression (int n) throws NoSuchSubexpressionException
     {
-      if (n == 0)
+      if (n == 0 && _body != null)
         return _body;
 
       throw new NoSuchSubexpressionException(this,n);
@@ -107,6 +118,67 @@ public class Definition extends ProtoExpression
       return _symbol;
     }
 
+  /**
+   * Returns <tt>true</tt> iff this definition's body has been released.
+   */
+  public final boolean isReleased ()
+    {
+      return _body == null;
+    }
+
+  /**
+   * Drops this definition's typed body - along with its parameters, nested scopes,
+   * and all their types - once it has been compiled, and returns <tt>true</tt> iff
+   * there was a body to drop. All that is needed thereafter (<i>e.g.</i>, for
+   * calling, inlining, or showing the defined symbol's code) is kept in its code
+   * entry and checked type, and only the size of the body is remembered (see
+   * <tt>releasedSize</tt>). A released definition may be neither copied,
+   * type-checked, nor compiled again (this throws an <tt>IllegalStateException</tt>);
+   * it must be rebuilt from its source to be so.
+   * This is called by a <a href="Compiler.html"><tt>Compiler</tt></a> according
+   * to its retention policy.
+   */
+  public final boolean releaseBody ()
+    {
+      if (_body == null)
+        return false;
+
+      _releasedSize = _size(_body);
+      _body = null;
+      _otherTypes = null;
+      return true;
+    }
+
+  /**
+   * Returns the number of expression nodes of this definition's body when it was
+   * released, or <tt>0</tt> if it has not been released.
+   */
+  public final int releasedSize ()
+    {
+      return _releasedSize;
+    }
+
+  private static final int _size (Expression expression)
+    {
+      int size = 1;
+
+      for (int i=expression.numberOfSubexpressions(); i-->0;)
+        size += _size(expression.subexpression(i));
+
+      return size;
+    }
+
+  /**
+   * Throws an <tt>IllegalStateException</tt> if this definition's body has been
+   * released, as the specified operation then cannot be performed.
+   */
+  private final void _checkNotReleased (String operation)
+    {
+      if (_body == null)
+        throw new IllegalStateException("cannot "+operation+" the definition of "+_symbol
+                                        +" as its body has been released");
+    }
+
   public final boolean isProjection ()
     {
       return _isProjection;
@@ -121,6 +193,7 @@ public class Definition extends ProtoExpression
   public final void setCheckedType ()
     {
       if (setCheckedTypeLocked()) return;
+      _checkNotReleased("set the checked type of");
       _body.setCheckedType();
       setCheckedType(type().standardize());
     }
@@ -150,6 +223,7 @@ public class Definition extends ProtoExpression
   public final void registerCodeEntry () throws DefinitionException
     {
       _codeEntry = _symbol.registerCodeEntry(_checkedType);
+      OverloadIndex.invalidate(_symbol);
       if (_isSetOnEvaluation)
         _codeEntry.setOnEvaluation();
     }
@@ -157,9 +231,10 @@ public class Definition extends ProtoExpression
   public final void typeCheck (TypeChecker typeChecker) throws TypingErrorException
     {
       if (typeCheckLocked()) return;
+      _checkNotReleased("type-check");
 
       _body.typeCheck(typeChecker);
-      typeChecker.unify(_type,_body.typeRef(),this);
+      typeChecker.unify(typeRef(),_body.typeRef(),this);
 
       if (_isField)
         typeChecker.disallowVoid(((FunctionType)type()).curryedRange(),
@@ -168,13 +243,6 @@ public class Definition extends ProtoExpression
                                  ((ClassType)((FunctionType)type()).domain(0)).name());
     }
 
-  public final Expression shiftOffsets (int intShift, int realShift, int objectShift,
-                                        int intDepth, int realDepth, int objectDepth)
-    {
-      throw new UnsupportedOperationException
-        ("method shiftOffsets may not be called on a Definition!");
-    }
-
   /**
    * Compiling a definition amounts to assigning a code array to the defined symbol
    * for its type and compiling its body into this code array. This will also make
@@ -191,6 +259,8 @@ public class Definition extends ProtoExpression
    */
   public final void compile (Compiler compiler)
     {
+      _checkNotReleased("compile");
+
       if (_isField)
         _codeEntry.setFieldInfo();
 
@@ -203,6 +273,6 @@ public class Definition extends ProtoExpression
 
   public final String toString ()
     {
-      return _symbol + " = " + _body;
+      return _symbol + " = " + (_body == null ? "<compiled: "+_releasedSize+" nodes released>" : _body.toString());
     }
 }
@@ -20,7 +20,7 @@ public class Dummy extends Expression
 {
   protected Tables _tables;
   protected String _name;
-  protected Type _type = new TypeParameter();
+  protected Type _type;
 
   public Dummy (String name)
     {
@@ -35,13 +35,14 @@ public class Dummy extends Expression
 
   public Dummy (Parameter parameter)
     {
-      this(parameter.name());
+      _name = parameter.name(); // already interned
       addTypes(parameter);
     }
 
   public Dummy (Tables tables, Parameter parameter)
     {
-      this(tables,parameter.name());
+      _tables = tables;
+      _name = parameter.name(); // already interned
       addTypes(parameter);
     }
 
@@ -55,6 +56,27 @@ public class Dummy extends Expression
       return new Dummy(_tables,_name).addTypes(this);
     }
 
+  /**
+   * A dummy is not shared among its occurrences, since setting the extent or
+   * adding types at one occurrence would alter the others. Instead, this returns
+   * a fresh dummy with the same name, tables, and types, and an extent of its own
+   * spanning the same locations - which is all a dummy holds before it is replaced
+   * when its name is sanitized.
+   */
+  public Expression sharedCopy ()
+    {
+      Dummy copy = new Dummy(_tables,_name);
+      copy.addTypes(this);
+
+      if (extent() != null)
+        {
+          copy.setStart(getStart());
+          copy.setEnd(getEnd());
+        }
+
+      return copy;
+    }
+
   public final Tables tables ()
     {
       return _tables;
@@ -70,9 +92,14 @@ public class Dummy extends Expression
       return name == _name;
     }  
 
+  public final void collectFreeNames (HashSet names)
+    {
+      names.add(_name);
+    }
+
   public final Type type ()
     {
-      return _type;
+      return typeRef();
     }
 
   public final void setType (Type type)
@@ -80,8 +107,15 @@ public class Dummy extends Expression
       if (type != null) _type = type;
     }
 
+  /**
+   * <b>NB:</b> as for a <a href="ProtoExpression.html"><tt>ProtoExpression</tt></a>,
+   * the type is allocated only when first needed.
+   */
   public final Type typeRef ()
     {
+      if (_type == null)
+        _type = new TypeParameter();
+
       return _type;
     }
 
@@ -91,7 +125,7 @@ public class Dummy extends Expression
         {
           Expression expression = (Expression)substitution.get(_name);
           if (expression != null)
-            return expression.typedCopy();
+            return expression.sharedCopy();
         }
 
       return this;
@@ -101,7 +135,7 @@ public class Dummy extends Expression
     {
       Parameter parameter = parameters.getLocalParameter(_name);
       Expression actual = (parameter == null)
-                        ? (Expression)new Global(_tables,_name)
+                        ? (Expression)new Global(_tables,parameters.symbol(_tables,_name))
                         : (Expression)new Local(parameter);
       return actual.addTypes(this).setExtent(this);
     }
@@ -134,17 +168,6 @@ public class Dummy extends Expression
                                               +this+")");
     }
 
-  /**
-   * A Dummy never gets to invoke this.
-   */
-  public final Expression shiftOffsets (int intShift, int realShift, int objectShift,
-                                        int intDepth, int realDepth, int objectDepth)
-    {
-      throw new UnsupportedOperationException("method shiftOffsets may not be called on a Dummy! ("
-                                              +this+")");
-      //      return this;
-    }
-
   /**
    * A Dummy never gets to invoke this.
    */
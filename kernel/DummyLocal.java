@@ -46,15 +46,6 @@ public class DummyLocal extends Local
     {
     }
 
-  /**
-   * No-op...
-   */
-  public final Expression shiftOffsets (int intShift, int realShift, int objectShift,
-                                        int intDepth, int realDepth, int objectDepth)
-    {
-      return this;
-    }
-
   /**
    * A DummyLocal never gets to invoke this.
    */
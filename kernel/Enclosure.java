@@ -10,40 +10,166 @@ package hlt.language.design.kernel;
  * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
  */
 
+import hlt.language.design.types.*;
+
 import hlt.language.util.Stack;
 
+import java.util.HashMap;
+
 /**
  * An <tt>Enclosure</tt> is the stack of scopes that are enclosing a
  * given subexpression. Besides stack operations, it provides the
  * method <tt>setLocalInfo(Local)</tt> that computes and sets the de
  * Bruijn index for the specified <tt>Local</tt> according to its
- * runtime sort by looking it up the stack of scopes' parameters as
- * it walks up through the enclosure from the subexpression's
- * occurrence to its outermost enclosing expression's root.  Along
- * the way, the <tt>Local</tt> is recorded in each enclosing
- * abstraction in which it occurs free - this is needed to compute
- * the maximal closure frame size to allocate for each abstraction.
+ * runtime sort. This index is the number of parameters of the same
+ * sort found by looking it up the stack of scopes' parameters as if
+ * walking up through the enclosure from the subexpression's occurrence
+ * to the scope binding the <tt>Local</tt>. Along the way, the frame
+ * size of each enclosing abstraction in which the <tt>Local</tt> occurs
+ * free is updated - this is needed to compute the maximal closure frame
+ * size to allocate for each abstraction.
+ *
+ * <p>
+ *
+ * Rather than actually walking through the scopes' parameters for each
+ * <tt>Local</tt>, each scope is given, when entered with <tt>enter</tt>,
+ * the cumulative counts of parameters of each sort of all the scopes
+ * enclosing it, and the counts of its own parameters of each sort from
+ * each position on; the binding of each parameter name is indexed. Thus,
+ * the index of a <tt>Local</tt> is obtained in constant time, and the
+ * frame sizes of the abstractions it occurs free in are updated in time
+ * proportional to the number of scopes traversed.
  */
 
 public class Enclosure extends Stack
 {
+  private static final int SORTS = 5;
+
+  /**
+   * For each scope in the stack, the number of parameters of each sort of
+   * this scope and all the scopes it is enclosed in.
+   */
+  private Stack _cumulativeCounts = new Stack();
+
+  /**
+   * For each scope in the stack, and for each sort and parameter position,
+   * the number of parameters of this sort at or after this position.
+   */
+  private Stack _suffixCounts = new Stack();
+
+  /**
+   * Maps each parameter name to its innermost binding.
+   */
+  private HashMap _bindings = new HashMap();
+
+  private static final int _index (byte sort)
+    {
+      switch (sort)
+        {
+        case Type.VOID_SORT:
+          return 0;
+        case Type.INT_SORT:
+          return 1;
+        case Type.REAL_SORT:
+          return 2;
+        case Type.OBJECT_SORT:
+          return 3;
+        }
+
+      return 4;
+    }
+
+  /**
+   * Pushes the specified scope on this enclosure.
+   */
+  final void enter (Scope scope)
+    {
+      Parameter[] parameters = scope.parameters();
+      int level = size();
+
+      int[] cumulative = new int[SORTS];
+      int[][] suffix = new int[SORTS][parameters.length+1];
+
+      if (level > 0)
+        System.arraycopy((int[])_cumulativeCounts.get(level-1),0,cumulative,0,SORTS);
+
+      for (int j = parameters.length; j-->0;)
+        {
+          int sort = _index(parameters[j].boxSort());
+          for (int s = SORTS; s-->0;)
+            suffix[s][j] = suffix[s][j+1];
+          suffix[sort][j]++;
+          cumulative[sort]++;
+        }
+
+      for (int j = 0; j < parameters.length; j++)
+        _bindings.put(parameters[j].name(),
+                      new Binding(level,j,(Binding)_bindings.get(parameters[j].name())));
+
+      push(scope);
+      _cumulativeCounts.push(cumulative);
+      _suffixCounts.push(suffix);
+    }
+
+  /**
+   * Pops the innermost scope from this enclosure.
+   */
+  final void exit ()
+    {
+      int level = size()-1;
+      Parameter[] parameters = ((Scope)get(level)).parameters();
+
+      for (int j = parameters.length; j-->0;)
+        {
+          Binding binding = (Binding)_bindings.get(parameters[j].name());
+
+          if (binding != null && binding.level == level)
+            if (binding.shadowed == null)
+              _bindings.remove(parameters[j].name());
+            else
+              _bindings.put(parameters[j].name(),binding.shadowed);
+        }
+
+      pop();
+      _cumulativeCounts.pop();
+      _suffixCounts.pop();
+    }
+
+  private final int _cumulativeCount (int level, int sort)
+    {
+      return level < 0 ? 0 : ((int[])_cumulativeCounts.get(level))[sort];
+    }
+
   final void setLocalInfo (Local local)
     {
-      for (int i = size(); i-->0;)
+      int top = size()-1;
+      int sort = _index(local.boxSort());
+
+      Binding binding = (Binding)_bindings.get(local.name());
+
+      int level = binding == null ? -1 : binding.level;
+      int count = binding == null ? 0 : ((int[][])_suffixCounts.get(level))[sort][binding.position];
+
+      local.setOffset(local.offset() + _cumulativeCount(top,sort) - _cumulativeCount(level,sort) + count);
+
+      for (int i = top; i > level; i--)
+        if (get(i) instanceof Abstraction)
+          ((Abstraction)get(i)).updateFrameSize(local.boxSort(),
+                                                _cumulativeCount(i-1,sort)
+                                                - _cumulativeCount(level,sort) + count);
+    }
+
+  private static final class Binding
+    {
+      int level;
+      int position;
+      Binding shadowed;
+
+      Binding (int level, int position, Binding shadowed)
         {
-          Scope scope = (Scope)get(i);
-          Parameter[] parameters = scope.parameters();
-
-          for (int j = parameters.length; j-->0;)
-            {
-              if (parameters[j].boxSort() == local.boxSort())
-                local.incOffset();
-              if (parameters[j].name() == local.name())
-                return;
-            }
-
-          if (scope instanceof Abstraction)
-            ((Abstraction)scope).addToFrame(local);
+          this.level = level;
+          this.position = position;
+          this.shadowed = shadowed;
         }
     }
 
@@ -0,0 +1,248 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.design.kernel;
+
+/**
+ * @version     Last modified on Mon Oct 19 17:36:12 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import hlt.language.design.instructions.*;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * This is a service evaluating independent compiled top-level expressions (as
+ * returned by <a href="Compiler.html#code()"><tt>Compiler.code()</tt></a>)
+ * concurrently - each on its own virtual thread when the platform provides
+ * them, and on a fixed pool of platform threads otherwise. The actual execution
+ * of code is delegated to a user-supplied <tt>Evaluator</tt> (<i>e.g.</i>,
+ * wrapping a runtime per thread) that all evaluate against the same global
+ * store.
+ *
+ * <p>
+ *
+ * At most <tt>maxConcurrency</tt> evaluations run at any time; the others wait
+ * for a permit (or, on platform threads, in the pool's queue). Each submission returns a <tt>Future</tt> of
+ * its result, which may be cancelled: a waiting evaluation is then dropped, and a
+ * running one is interrupted (which the evaluator may or may not heed).
+ *
+ * <p>
+ *
+ * Code that assigns a global (<i>i.e.</i>, that contains a <tt>SetGlobal</tt>
+ * instruction, as compiled from a <a href="GlobalAssignment.html">
+ * <tt>GlobalAssignment</tt></a>) is handled according to this service's write
+ * policy: with <tt>SERIALIZE</tt>, it runs alone, while no other evaluation is
+ * running; with <tt>REJECT</tt>, its submission is refused. All other code runs
+ * concurrently with any other such code. The assignments performed by the code
+ * of the defined functions the submitted code calls, transitively, are detected
+ * as well (see <a href="Compiler.html#mayAssignGlobals(hlt.language.design.instructions.Instruction[])">
+ * <tt>Compiler.mayAssignGlobals</tt></a>); code calling functions whose code is
+ * not known is deemed to assign globals. Callers knowing better may submit code
+ * with an explicit <tt>writesGlobals</tt> flag.
+ */
+public class EvaluationService
+{
+  /**
+   * This is the interface of objects executing a compiled top-level expression
+   * and returning its value. An evaluator may be called by several threads at
+   * once.
+   */
+  public static interface Evaluator
+    {
+      public Object evaluate (Instruction[] code) throws Exception;
+    }
+
+  /**
+   * With this write policy, code assigning globals is run in mutual exclusion with
+   * all other evaluations.
+   */
+  public static final int SERIALIZE = 0;
+
+  /**
+   * With this write policy, code assigning globals is rejected.
+   */
+  public static final int REJECT = 1;
+
+  private Evaluator _evaluator;
+  private int _writePolicy;
+
+  private Semaphore _permits;
+  private ExecutorService _executor;
+
+  /**
+   * Evaluations assigning globals hold this lock's write lock, all others its
+   * read lock.
+   */
+  private ReentrantReadWriteLock _globalsLock = new ReentrantReadWriteLock(true);
+
+  public EvaluationService (Evaluator evaluator, int maxConcurrency, int writePolicy)
+    {
+      if (writePolicy != SERIALIZE && writePolicy != REJECT)
+        throw new IllegalArgumentException("unknown write policy: "+writePolicy);
+
+      _evaluator = evaluator;
+      _writePolicy = writePolicy;
+      maxConcurrency = Math.max(1,maxConcurrency);
+      _permits = new Semaphore(maxConcurrency,true);
+      _executor = _newExecutor(maxConcurrency);
+    }
+
+  /**
+   * Creates a service with as many permits as there are available processors
+   * that serializes code assigning globals.
+   */
+  public EvaluationService (Evaluator evaluator)
+    {
+      this(evaluator,java.lang.Runtime.getRuntime().availableProcessors(),SERIALIZE);
+    }
+
+  /**
+   * Returns an executor starting a virtual thread per task if the platform has
+   * them, or else a fixed pool of the specified number of daemon platform threads
+   * - in which case tasks beyond that number wait in the pool's queue rather than
+   * on threads of their own.
+   */
+  private static final ExecutorService _newExecutor (int maxConcurrency)
+    {
+      try
+        {
+          return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+                                                 .invoke(null);
+        }
+      catch (Exception e)
+        {
+          return Executors.newFixedThreadPool(maxConcurrency,new java.util.concurrent.ThreadFactory()
+            {
+              public Thread newThread (Runnable task)
+                {
+                  Thread thread = new Thread(task,"evaluation");
+                  thread.setDaemon(true);
+                  return thread;
+                }
+            });
+        }
+    }
+
+  public final int writePolicy ()
+    {
+      return _writePolicy;
+    }
+
+  /**
+   * Returns <tt>true</tt> unless the specified code is known not to assign any
+   * global, directly or through the defined functions it calls.
+   */
+  public static final boolean writesGlobals (Instruction[] code)
+    {
+      return Compiler.mayAssignGlobals(code);
+    }
+
+  /**
+   * Submits the specified code for evaluation and returns the future of its
+   * result. This throws a <tt>RejectedExecutionException</tt> if the code assigns
+   * globals and this service's policy is <tt>REJECT</tt>, or if this service has
+   * been shut down.
+   */
+  public final Future submit (Instruction[] code)
+    {
+      return submit(code,writesGlobals(code));
+    }
+
+  /**
+   * Submits the specified code for evaluation, as assigning globals or not
+   * according to the specified flag, and returns the future of its result.
+   */
+  public final Future submit (Instruction[] code, boolean writesGlobals)
+    {
+      if (writesGlobals && _writePolicy == REJECT)
+        throw new RejectedExecutionException("evaluation assigning globals rejected");
+
+      return _executor.submit(new EvaluationTask(code,writesGlobals));
+    }
+
+  /**
+   * Returns the number of evaluations that may start right away.
+   */
+  public final int availablePermits ()
+    {
+      return _permits.availablePermits();
+    }
+
+  /**
+   * Stops accepting new submissions; those already submitted still run.
+   */
+  public final void shutdown ()
+    {
+      _executor.shutdown();
+    }
+
+  /**
+   * Stops accepting new submissions, and cancels those already submitted.
+   */
+  public final void shutdownNow ()
+    {
+      _executor.shutdownNow();
+    }
+
+  public final boolean awaitTermination (long timeout, TimeUnit unit) throws InterruptedException
+    {
+      return _executor.awaitTermination(timeout,unit);
+    }
+
+  /**
+   * This is the task evaluating one submitted code array.
+   */
+  private final class EvaluationTask implements Callable
+    {
+      private Instruction[] _code;
+      private boolean _writesGlobals;
+
+      EvaluationTask (Instruction[] code, boolean writesGlobals)
+        {
+          _code = code;
+          _writesGlobals = writesGlobals;
+        }
+
+      /**
+       * The globals lock is taken before the permit, so that an evaluation waiting
+       * for the lock (<i>e.g.</i>, one assigning globals, waiting for the running
+       * ones to end) holds no permit that others could use meanwhile.
+       */
+      public final Object call () throws Exception
+        {
+          Lock lock = _writesGlobals ? (Lock)_globalsLock.writeLock()
+                                     : (Lock)_globalsLock.readLock();
+          lock.lockInterruptibly();
+
+          try
+            {
+              _permits.acquire();
+
+              try
+                {
+                  return _evaluator.evaluate(_code);
+                }
+              finally
+                {
+                  _permits.release();
+                }
+            }
+          finally
+            {
+              lock.unlock();
+            }
+        }
+    }
+}
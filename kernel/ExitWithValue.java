@@ -94,7 +94,7 @@ public class ExitWithValue extends ProtoExpression
       _value.typeCheck(typeChecker);
       typeChecker.prove(new CheckExitableGoal(_value.type(),this));
       if (_typeAsValue)
-        typeChecker.unify(_type,_value.type(),this);
+        typeChecker.unify(typeRef(),_value.type(),this);
     }
 
   public final void compile (Compiler compiler)
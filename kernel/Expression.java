@@ -163,9 +163,21 @@ public abstract class Expression implements Locatable
    * <li> <a href="TupleUpdate.html"><tt>TupleUpdate</tt></a>.
    * </ul>
    * Each of these will use this flag to alter they type-cehcking and compiling rules
-   * accordingly.
+   * accordingly. <b>NB:</b> the expressions read the setting installed for the
+   * current thread (see <tt>voidAssignments</tt>), which is this flag's current
+   * value unless it has been set explicitly on the installed <a
+   * href="Settings.html"><tt>Settings</tt></a>.
    */
-  public static boolean VOID_ASSIGNMENTS = false;
+  public static volatile boolean VOID_ASSIGNMENTS = false;
+
+  /**
+   * Returns <tt>true</tt> iff assignments have a <tt>void</tt> type in the
+   * <a href="Settings.html#current()">settings</a> of the current thread.
+   */
+  protected static final boolean voidAssignments ()
+    {
+      return Settings.current().voidAssignments();
+    }
 
   /**
    * Returns a deep copy of this expression. The types are not not copied.
@@ -183,6 +195,21 @@ public abstract class Expression implements Locatable
    */
   public abstract Expression typedCopy ();
 
+  /**
+   * Returns an expression that may stand for a typed copy of this expression at
+   * another occurrence. By default, this is a <tt>typedCopy()</tt>; but expressions
+   * that are never altered by any processing of their occurrences (<i>e.g.</i>,
+   * constants) return themselves, thus sharing the same node among all
+   * occurrences, and others return the cheapest copy that is safe (<i>e.g.</i>,
+   * dummies, which keep their extents). <b>NB:</b> since a shared node already
+   * has the same type as its typed copy would, types should not be added to the
+   * result of this method.
+   */
+  public Expression sharedCopy ()
+    {
+      return typedCopy();
+    }
+
   /**
    * Prevents type-checking this expression more than once.
    */
@@ -198,6 +225,18 @@ public abstract class Expression implements Locatable
       return true;
     }
 
+  /**
+   * Allows type-checking this expression and all its subexpressions anew
+   * (<i>e.g.</i>, after a failed attempt).
+   */
+  public final void unlockTypeCheck ()
+    {
+      _typeCheckLocked = false;
+
+      for (int i=numberOfSubexpressions(); i-->0;)
+        subexpression(i).unlockTypeCheck();
+    }
+
   /**
    * Prevents setting the checked type for this expression more than once.
    */
@@ -430,6 +469,28 @@ public abstract class Expression implements Locatable
       return false;
     }
 
+  /**
+   * Returns the set of (interned) names occurring free in this expression. For any
+   * name, <tt>freeNames().contains(name)</tt> is equivalent to <tt>containsFreeName(name)</tt>,
+   * but the set may be computed once and then queried for many names.
+   */
+  public final HashSet freeNames ()
+    {
+      HashSet names = new HashSet();
+      collectFreeNames(names);
+      return names;
+    }
+
+  /**
+   * Adds to the specified set the names occurring free in this expression. This must
+   * be overridden consistently with <tt>containsFreeName</tt>.
+   */
+  public void collectFreeNames (HashSet names)
+    {
+      for (int i=numberOfSubexpressions(); i-->0;)
+        subexpression(i).collectFreeNames(names);
+    }
+
   /**
    * This method returns the actual expression corresponding to this one after
    * eliminating all the <a href="Dummy.html"><tt>Dummy</tt></a> expressions that occur
@@ -462,29 +523,6 @@ public abstract class Expression implements Locatable
         subexpression(i).sanitizeSorts(enclosure);
     }
 
-  /**
-   * This methods visits this expression shifting the offset of all the <a
-   * href="Local.html"><tt>Local</tt></a>s it encounters by the specified amount (per
-   * sort) as long as the offset it sees is referencing a parameter within the specified
-   * scope depth (per sort); This method is used when the compiler needs to
-   * synthesize an scope from an already typechecked expression (<i>i.e.</i>, for
-   * currying or un/boxing - <i>e.g.</i>, see the <tt>pad</tt> method below).
-   */
-  public Expression shiftOffsets (int intShift, int realShift, int objectShift,
-                                  int intDepth, int realDepth, int objectDepth)
-
-    {
-      for (int i=numberOfSubexpressions(); i-->0;)
-        setSubexpression(i,subexpression(i).shiftOffsets(intShift,realShift,objectShift,
-                                                         intDepth,realDepth,objectDepth));
-      return this;
-    }
-
-  public final Expression shiftOffsets (int intShift, int realShift, int objectShift)
-    {
-      return shiftOffsets(intShift,realShift,objectShift,0,0,0);
-    }
-
   /**
    * This method type-checks this expression in the context of the specified
     *<a href="../types/TypeChecker.html"> <tt>TypeChecker</tt></a>.
@@ -717,6 +755,20 @@ public abstract class Expression implements Locatable
       return Misc.locationString(_extent);
     }
 
+  /**
+   * Returns <tt>true</tt> iff an expression of the specified actual function type
+   * must be <i>padded</i> (see below) to be passed where the specified formal
+   * function type is expected.
+   */
+  static final boolean needsPadding (FunctionType formalType, FunctionType actualType)
+    {
+      for (int i=actualType.arity(); i-->0;)
+        if (formalType.argumentSortsDisagree(actualType,i))
+          return true;
+
+      return formalType.resultSortsDisagree(actualType);
+    }
+
   /**
    * This method analyzes the type boxing information for this expression when it
    * occurs as a <i>functional</i> argument of an application. This returns an
@@ -740,14 +792,6 @@ public abstract class Expression implements Locatable
       FunctionType actualType = (FunctionType)checkedType();
       
       int arity = actualType.arity();
-      boolean argumentSortsAgree = true;
-      
-      for (int i=0; i<arity; i++)
-        if (formalType.argumentSortsDisagree(actualType,i))
-          {
-            argumentSortsAgree = false;
-            break;
-          }
 
 //        /* start of code for debugging only */
 //        hlt.language.tools.Debug.step("Expression = "+this+
@@ -755,7 +799,7 @@ public abstract class Expression implements Locatable
 //                                       "\nFormal type = "+formalType+"\t"+formalType.maskRef());
 //        /* end of code for debugging only */
 
-      if (argumentSortsAgree && !formalType.resultSortsDisagree(actualType))
+      if (!needsPadding(formalType,actualType))
         return this;
 
       Application innerPadding;
@@ -857,9 +901,10 @@ public abstract class Expression implements Locatable
       abstraction = new Abstraction(parameters,outerPadding);
       abstraction.setNonExitable();
       abstraction.setSortedArities();
-      shiftOffsets(abstraction.intArity(),
-                   abstraction.realArity(),
-                   abstraction.objectArity());
+      innerPadding.setSubexpression(0,FrameShift.wrap(this,
+                                                      abstraction.intArity(),
+                                                      abstraction.realArity(),
+                                                      abstraction.objectArity()));
 
 //        /* start of code for debugging only */
 //        String s = parameters.length > 1 ? "(" : "";
@@ -150,13 +150,13 @@ public class FieldUpdate extends ProtoExpression
           _tupleUpdate = new TupleUpdate(new TupleProjection(_object,_field.name()),
                                          _value);
 
-          if (VOID_ASSIGNMENTS)
+          if (voidAssignments())
             {
-              typeChecker.unify(_type,Type.VOID,this);
+              typeChecker.unify(typeRef(),Type.VOID,this);
               _tupleUpdate.typeCheck(typeChecker);
             }
           else
-            _tupleUpdate.typeCheck(_type,typeChecker);
+            _tupleUpdate.typeCheck(typeRef(),typeChecker);
 
           return;
         }
@@ -176,7 +176,7 @@ public class FieldUpdate extends ProtoExpression
 
       typeChecker.disallowVoid(_value.type(),_value,"assigned value");
 
-      if (VOID_ASSIGNMENTS)
+      if (voidAssignments())
         {
           typeChecker.unify(field.typeRef(),_value.typeRef());
           typeChecker.typeCheck(this,Type.VOID);
@@ -229,7 +229,7 @@ public class FieldUpdate extends ProtoExpression
           compiler.generate(new SetObjectField(fieldEntry));
         }
 
-      if (VOID_ASSIGNMENTS)
+      if (voidAssignments())
         compiler.generateStackPop(sort);
     }
     
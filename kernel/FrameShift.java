@@ -0,0 +1,167 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.design.kernel;
+
+/**
+ * @version     Last modified on Mon Oct 19 16:48:05 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import hlt.language.design.types.*;
+
+/**
+ * This is a compile-time only expression standing for an already sort-sanitized
+ * expression that the compiler moves inside a new scope - <i>i.e.</i>, when
+ * padding a function (see <a href="Expression.html#pad"><tt>Expression.pad</tt></a>)
+ * or currying a builtin (see <a href="Application.html"><tt>Application</tt></a>).
+ * The offsets of the locals of this expression referring to parameters outside
+ * of it must then be shifted by the arities (per sort) of the new scope. Rather
+ * than rewriting these locals, this records the shift, which the compiler
+ * applies to their offsets as it generates the code of the expression (see <a
+ * href="Compiler.html#offset(byte, int)"><tt>Compiler.offset</tt></a>). This
+ * leaves the shifted expression untouched, and costs no walk of it however
+ * many times it is padded.
+ */
+public class FrameShift extends Expression
+{
+  private Expression _expression;
+
+  private int _intShift;
+  private int _realShift;
+  private int _objectShift;
+
+  private FrameShift (Expression expression, int intShift, int realShift, int objectShift)
+    {
+      _expression = expression;
+      _intShift = intShift;
+      _realShift = realShift;
+      _objectShift = objectShift;
+    }
+
+  /**
+   * Returns the specified expression shifted by the specified amounts (per sort),
+   * or the expression itself if it needs no shifting.
+   */
+  public static final Expression wrap (Expression expression,
+                                       int intShift, int realShift, int objectShift)
+    {
+      if (expression instanceof Global
+          || intShift == 0 && realShift == 0 && objectShift == 0)
+        return expression;
+
+      return new FrameShift(expression,intShift,realShift,objectShift);
+    }
+
+  public final Expression expression ()
+    {
+      return _expression;
+    }
+
+  public final Expression copy ()
+    {
+      return new FrameShift(_expression.copy(),_intShift,_realShift,_objectShift);
+    }
+
+  public final Expression typedCopy ()
+    {
+      return new FrameShift(_expression.typedCopy(),_intShift,_realShift,_objectShift);
+    }
+
+  public final int numberOfSubexpressions ()
+    {
+      return 1;
+    }
+
+  public final Expression subexpression (int n) throws NoSuchSubexpressionException
+    {
+      if (n == 0)
+        return _expression;
+
+      throw new NoSuchSubexpressionException(this,n);
+    }
+
+  public final Expression setSubexpression (int n, Expression expression)
+    throws NoSuchSubexpressionException
+    {
+      if (n == 0)
+        _expression = expression;
+      else
+        throw new NoSuchSubexpressionException(this,n);
+
+      return this;
+    }
+
+  public final Type type ()
+    {
+      return _expression.type();
+    }
+
+  public final void setType (Type type)
+    {
+      _expression.setType(type);
+    }
+
+  public final Type typeRef ()
+    {
+      return _expression.typeRef();
+    }
+
+  public final Type checkedType ()
+    {
+      return _expression.checkedType();
+    }
+
+  /**
+   * No-op: the shifted expression's checked type is already set.
+   */
+  public final void setCheckedType ()
+    {
+    }
+
+  public final void setCheckedType (Type type)
+    {
+      _expression.setCheckedType(type);
+    }
+
+  /**
+   * A FrameShift is never type-checked (it is built at compile time).
+   */
+  public final void typeCheck (TypeChecker typeChecker) throws TypingErrorException
+    {
+      throw new UnsupportedOperationException("method typeCheck may not be called on a FrameShift! ("
+                                              +this+")");
+    }
+
+  /**
+   * Returns <tt>true</tt> iff the shifted expression is an abstraction that may be
+   * compiled as a plain scope when applied to the specified number of arguments
+   * (see <a href="Abstraction.html#isLocallyApplicable(int)"><tt>Abstraction.isLocallyApplicable</tt></a>).
+   */
+  public final boolean isLocallyApplicable (int arity)
+    {
+      return _expression instanceof Abstraction
+          && ((Abstraction)_expression).isLocallyApplicable(arity);
+    }
+
+  /**
+   * Compiles the shifted abstraction as a plain scope. This must only be called
+   * when <tt>isLocallyApplicable</tt> holds.
+   */
+  public final void compileAsScope (Compiler compiler)
+    {
+      compiler.compileShiftedAsScope((Abstraction)_expression,_intShift,_realShift,_objectShift);
+    }
+
+  public final void compile (Compiler compiler)
+    {
+      compiler.compileShifted(_expression,_intShift,_realShift,_objectShift);
+    }
+
+  public final String toString ()
+    {
+      return _expression.toString();
+    }
+}
@@ -0,0 +1,178 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.design.kernel;
+
+/**
+ * @version     Last modified on Mon Oct 19 16:02:29 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import hlt.language.design.types.*;
+import hlt.language.design.instructions.*;
+
+/**
+ * This class drives a top-level expression through all the phases of the
+ * kernel's front end down to compiled code, recording the time spent in each
+ * phase. The phases are:
+ * <ol>
+ * <li> <tt>NAMES</tt>: linking the scope tree and sanitizing names (see <a
+ *      href="Sanitizer.html"><tt>Sanitizer</tt></a>) - this is also when
+ *      patterns are desugared and filters unnested, as comprehensions are
+ *      constructed upon first access to their subexpressions;
+ * <li> <tt>TYPES</tt>: type-checking;
+ * <li> <tt>SORTS</tt>: setting the checked types, registering the code entry
+ *      of a definition, and sanitizing sorts (which includes simplifying
+ *      trivial <tt>Let</tt>s - see <a href="LetSimplifier.html">
+ *      <tt>LetSimplifier</tt></a>);
+ * <li> <tt>CODE</tt>: compiling.
+ * </ol>
+ * <b>NB:</b> this class only instruments the existing phases: it runs the same
+ * walks as before, in the same order, and fuses none of them. Scope-tree linking
+ * and name sanitizing cannot be done in a single walk, as comprehensions need
+ * the nested comprehension counts of all their enclosing scopes (which are known
+ * only after the whole tree is linked) when they are constructed during name
+ * sanitizing. Likewise, setting checked types and sanitizing sorts are kept as
+ * two walks since the former is done by each kind of expression in its own
+ * order, and the latter needs the checked types of all the parameters in scope.
+ * Each pair is merely run back to back and timed as one phase.
+ *
+ * <p>
+ *
+ * All the phases are run with the <a href="Settings.html"><tt>Settings</tt></a>
+ * of this front end's compiler installed for the current thread.
+ */
+public class FrontEnd
+{
+  public static final int NAMES = 0;
+  public static final int TYPES = 1;
+  public static final int SORTS = 2;
+  public static final int CODE  = 3;
+
+  private static final String[] _PHASE_NAMES = { "names", "types", "sorts", "code" };
+
+  private TypeChecker _typeChecker;
+  private Compiler _compiler;
+
+  private long[] _times = new long[_PHASE_NAMES.length];
+  private int _count = 0;
+
+  public FrontEnd (TypeChecker typeChecker, Compiler compiler)
+    {
+      _typeChecker = typeChecker;
+      _compiler = compiler;
+    }
+
+  public final TypeChecker typeChecker ()
+    {
+      return _typeChecker;
+    }
+
+  public final Compiler compiler ()
+    {
+      return _compiler;
+    }
+
+  /**
+   * Runs the specified expression through all the front-end phases, and returns
+   * the compiled code. The expression is sanitized in the context of the specified
+   * parameter stack if it is not <tt>null</tt>.
+   */
+  public final Instruction[] process (Expression expression, ParameterStack parameters)
+    throws TypingErrorException, DefinitionException
+    {
+      Settings previous = Settings.install(_compiler.settings());
+
+      try
+        {
+          long time = System.nanoTime();
+
+          expression = parameters == null ? Sanitizer.sanitizeNames(expression)
+                                          : Sanitizer.sanitizeNames(expression,parameters);
+
+          time = _lap(NAMES,time);
+
+          expression.typeCheck(_typeChecker);
+
+          time = _lap(TYPES,time);
+
+          expression.setCheckedType();
+          if (expression instanceof Definition)
+            ((Definition)expression).registerCodeEntry();
+          Sanitizer.sanitizeSorts(expression);
+
+          time = _lap(SORTS,time);
+
+          _compiler.compile(expression);
+
+          _lap(CODE,time);
+          _count++;
+
+          return _compiler.code();
+        }
+      finally
+        {
+          Settings.install(previous);
+        }
+    }
+
+  public final Instruction[] process (Expression expression)
+    throws TypingErrorException, DefinitionException
+    {
+      return process(expression,null);
+    }
+
+  private final long _lap (int phase, long start)
+    {
+      long time = System.nanoTime();
+      _times[phase] += time - start;
+      return time;
+    }
+
+  /**
+   * Returns the total time in nanoseconds spent in the specified phase since this
+   * front end was created or its timings were last reset.
+   */
+  public final long time (int phase)
+    {
+      return _times[phase];
+    }
+
+  /**
+   * Returns the number of expressions processed since this front end was created
+   * or its timings were last reset.
+   */
+  public final int count ()
+    {
+      return _count;
+    }
+
+  public final void resetTimings ()
+    {
+      for (int i=_times.length; i-->0;)
+        _times[i] = 0;
+      _count = 0;
+    }
+
+  /**
+   * Returns a report of the time spent in each phase, in milliseconds.
+   */
+  public final String toString ()
+    {
+      StringBuilder buf = new StringBuilder("front end (")
+                            .append(_count)
+                            .append(_count == 1 ? " expression):" : " expressions):");
+
+      long total = 0;
+      for (int i=0; i<_times.length; i++)
+        {
+          total += _times[i];
+          buf.append(" ").append(_PHASE_NAMES[i]).append(" = ")
+             .append(_times[i]/1000000.0).append(" ms");
+        }
+
+      return buf.append(" total = ").append(total/1000000.0).append(" ms").toString();
+    }
+}
@@ -16,6 +16,7 @@ import hlt.language.design.instructions.*;
 import hlt.language.util.Stack;
 import hlt.language.util.ArrayList;
 
+import java.util.HashSet;
 import java.util.Iterator;
 
 public class Global extends ProtoExpression
@@ -108,6 +109,11 @@ public class Global extends ProtoExpression
       return name == name();
     }
 
+  public final void collectFreeNames (HashSet names)
+    {
+      names.add(name());
+    }
+
   public final DefinedEntry definedEntry ()
     {
       return (DefinedEntry)_checkedCodeEntry;
@@ -158,10 +164,10 @@ public class Global extends ProtoExpression
 
   private final ArrayList _eligibles ()
     {
-      ArrayList typeTable = _symbol.typeTable();
-
       if (type().kind() == Type.PARAMETER)
-        return typeTable;
+        return _symbol.typeTable();
+
+      ArrayList typeTable = OverloadIndex.candidates(_symbol,type());
 
       ArrayList eligibles = new ArrayList(typeTable.size());
       
@@ -187,7 +193,8 @@ public class Global extends ProtoExpression
       for (Iterator i=typeTable.iterator(); i.hasNext();)
         {
           CodeEntry candidate = (CodeEntry)i.next();
-          if (candidate.type().copy().unify(filter().copy()))
+          if (OverloadIndex.mayUnify(candidate.type(),filter())
+              && candidate.type().copy().unify(filter().copy()))
             viableTypes.add(candidate);
         }
 
@@ -225,7 +232,10 @@ public class Global extends ProtoExpression
       if (definedEntry().isInlinable())
         compiler.inline(definedEntry().code());
       else
-        compiler.generate(new Call(definedEntry()));
+        {
+          compiler.noteCall(definedEntry());
+          compiler.generate(new Call(definedEntry()));
+        }
     }
 
   private final void _compileCurryedBuiltin(Compiler compiler)
@@ -68,7 +68,7 @@ public class GlobalAssignment extends Assignment
 
       compiler.generate(new SetGlobal(entry));
 
-      if (VOID_ASSIGNMENTS)
+      if (voidAssignments())
         compiler.generateStackPop(entry.type().boxSort());
     }
 }
@@ -90,7 +90,7 @@ public class HideType extends ProtoExpression
                                                           +_opaqueType)));
 
       _expression.typeCheck(((DefinedType)_opaqueType).definition(),typeChecker);
-      typeChecker.unify(_type,_opaqueType,this);
+      typeChecker.unify(typeRef(),_opaqueType,this);
     }
 
   public final void compile (Compiler compiler)
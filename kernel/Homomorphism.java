@@ -411,24 +411,24 @@ public class Homomorphism extends ProtoExpression
 
       _collection.typeCheck(Global.dummyCollection(),typeChecker);
 
-      _identity.typeCheck(_type,typeChecker);
+      _identity.typeCheck(typeRef(),typeChecker);
 
       Type shadowType = new TypeParameter();    // shadow of _type        /* workaround [1] */
 
       typeChecker.prove(new BaseTypeGoal(_collection,_elementType));
-      typeChecker.prove(new ShadowUnifyGoal(shadowType,_type));           /* workaround [1] */
+      typeChecker.prove(new ShadowUnifyGoal(shadowType,typeRef()));       /* workaround [1] */
 
-      //FunctionType opType = new FunctionType(imageType,_type,_type);    /* original   [1] */
-      FunctionType opType = new FunctionType(imageType,shadowType,_type); /* workaround [1] */
+      //FunctionType opType = new FunctionType(imageType,typeRef(),typeRef()); /* original   [1] */
+      FunctionType opType = new FunctionType(imageType,shadowType,typeRef()); /* workaround [1] */
       _operation.typeCheck(opType,typeChecker);
 
-      FunctionType funType = new FunctionType(_elementType,_type);
+      FunctionType funType = new FunctionType(_elementType,typeRef());
       _function.typeCheck(funType,typeChecker);
 
       if (type().rank() == imageType.value().rank())
         // do this image type check only for a primitive homomorphism
-        //typeChecker.typeCheck(new UnifyGoal(_type,imageType));          /* original   [2] */
-        typeChecker.prove(new ShadowUnifyGoal(_type,imageType));          /* workaround [2] */
+        //typeChecker.typeCheck(new UnifyGoal(typeRef(),imageType));      /* original   [2] */
+        typeChecker.prove(new ShadowUnifyGoal(typeRef(),imageType));      /* workaround [2] */
       else
         // do this base type check only for a collection homomorphism
         typeChecker.prove(new BaseTypeGoal(this,imageType));
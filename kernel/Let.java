@@ -58,7 +58,7 @@ public class Let extends Application
           argumentTypes[i] = _arguments[i].typeRef();
         }
 
-      FunctionType functionType = new FunctionType(argumentTypes,_type).setNoCurrying();
+      FunctionType functionType = new FunctionType(argumentTypes,typeRef()).setNoCurrying();
 
       _function.typeCheck(functionType,typeChecker);
     }
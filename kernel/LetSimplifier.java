@@ -0,0 +1,246 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.design.kernel;
+
+/**
+ * @version     Last modified on Mon Oct 19 14:20:46 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import hlt.language.design.types.*;
+
+import java.util.HashSet;
+
+/**
+ * This class implements a simplification pass eliminating <i>trivial</i> <a
+ * href="Let.html"><tt>Let</tt></a>s from a type-checked expression before its
+ * sorts are sanitized (see <a href="Sanitizer.html"><tt>Sanitizer</tt></a>). A
+ * <tt>Let</tt> is trivial when each of its parameters is bound to either a
+ * constant or a <a href="Local.html"><tt>Local</tt></a>, and when neither this
+ * parameter nor that local's parameter is ever assigned in the expression.
+ * Since locals are bound by name when their sorts are sanitized (see <a
+ * href="Enclosure.html"><tt>Enclosure</tt></a>), a <tt>Let</tt> binding a
+ * parameter to a local is also not trivial if some scope in its body rebinds
+ * that local's name, which would capture its substituted occurrences. Such
+ * a <tt>Let</tt> is replaced by its body where each occurrence of a parameter is
+ * replaced by (a new occurrence of) the value it is bound to. This saves the
+ * <tt>PushScope</tt> and <tt>Enter</tt> instructions, and the frame, of the
+ * <tt>Let</tt>'s scope.
+ *
+ * <p>
+ *
+ * Since the <tt>Let</tt>'s compiled code must not change otherwise, a <tt>Let</tt>
+ * is only eliminated if no argument or result needs be (un)wrapped by its
+ * application, and if each parameter has the same runtime sort as its value.
+ * Also, nested <tt>Let</tt>s are not merged, and the bindings of non-trivial
+ * <tt>Let</tt>s are not allocated in their enclosing frame: both would require
+ * building the boxing masks of new function types, which is the type-checker's
+ * business. <tt>Let</tt>s binding other expressions (including globals, whose
+ * value may be assigned or costly to recompute) are left as they are.
+ */
+public class LetSimplifier
+{
+  /**
+   * The parameters of all the locals assigned in the expression being simplified.
+   */
+  private HashSet _assigned = new HashSet();
+
+  private LetSimplifier (Expression expression)
+    {
+      _collectAssigned(expression);
+    }
+
+  /**
+   * Eliminates the trivial <tt>Let</tt>s in the specified expression, which must
+   * be type-checked and have its checked types set, but must not have its sorts
+   * sanitized yet. This returns the simplified expression. Nothing is simplified
+   * if the <tt>simplifyLets</tt> setting installed for the current thread (see
+   * <a href="Settings.html"><tt>Settings</tt></a>) is <tt>false</tt>.
+   */
+  public static final Expression simplify (Expression expression)
+    {
+      if (!Settings.current().simplifyLets())
+        return expression;
+
+      return new LetSimplifier(expression)._simplify(expression);
+    }
+
+  /**
+   * Eliminates the trivial <tt>Let</tt>s in the subexpressions of the specified
+   * expression, which is itself left in place even if it is a trivial <tt>Let</tt>.
+   */
+  public static final void simplifyWithin (Expression expression)
+    {
+      if (Settings.current().simplifyLets())
+        new LetSimplifier(expression)._simplifySubexpressions(expression);
+    }
+
+  private final void _collectAssigned (Expression expression)
+    {
+      if (expression instanceof LocalAssignment)
+        {
+          Expression lhs = expression.subexpression(0);
+          if (lhs instanceof Local)
+            _assigned.add(((Local)lhs).parameter());
+        }
+
+      for (int i=expression.numberOfSubexpressions(); i-->0;)
+        _collectAssigned(expression.subexpression(i));
+    }
+
+  private final Expression _simplify (Expression expression)
+    {
+      if (expression instanceof Scope && ((Scope)expression).isSortSanitized())
+        return expression;
+
+      if (expression instanceof UndecidedExpression)
+        {
+          UndecidedExpression undecided = (UndecidedExpression)expression;
+          int choice = undecided.getActualChoiceIndicator();
+
+          if (choice != -1)
+            {
+              Expression option = undecided.subexpression(choice);
+              Expression simplified = _simplify(option);
+              if (simplified != option)
+                undecided.setSubexpression(choice,simplified);
+            }
+
+          return expression;
+        }
+
+      _simplifySubexpressions(expression);
+
+      if (expression.getClass() == Let.class && _isTrivial((Let)expression))
+        return _eliminate((Let)expression);
+
+      return expression;
+    }
+
+  private final void _simplifySubexpressions (Expression expression)
+    {
+      for (int i=expression.numberOfSubexpressions(); i-->0;)
+        {
+          Expression subexpression = expression.subexpression(i);
+          Expression simplified = _simplify(subexpression);
+          if (simplified != subexpression)
+            expression.setSubexpression(i,simplified);
+        }
+    }
+
+  private final boolean _isTrivial (Let let)
+    {
+      if (!(let.function() instanceof Scope) || let.function() instanceof Abstraction)
+        return false;
+
+      Scope scope = (Scope)let.function();
+      FunctionType functionType = (FunctionType)scope.checkedType();
+      Expression body = scope.body();
+
+      if (functionType.rangeIsBoxed() != let.checkedType().isBoxedType()
+          || body.boxSort() != let.boxSort())
+        return false;
+
+      for (int i=let.arity(); i-->0;)
+        {
+          Parameter parameter = scope.parameter(i);
+          Expression argument = let.argument(i);
+
+          if (_assigned.contains(parameter)
+              || functionType.domainIsBoxed(i) != argument.checkedType().isBoxedType()
+              || parameter.boxSort() != argument.boxSort())
+            return false;
+
+          if (argument instanceof Constant && !(argument instanceof NewObject))
+            continue;
+
+          if (argument.getClass() == Local.class
+              && !_assigned.contains(((Local)argument).parameter())
+              && !rebinds(body,((Local)argument).name()))
+            continue;
+
+          return false;
+        }
+
+      return true;
+    }
+
+  /**
+   * Returns <tt>true</tt> iff some scope in the specified expression has a
+   * parameter with the specified name.
+   */
+  static final boolean rebinds (Expression expression, String name)
+    {
+      if (expression instanceof Scope)
+        {
+          Scope scope = (Scope)expression;
+          for (int i=scope.arity(); i-->0;)
+            if (name.equals(scope.parameter(i).name()))
+              return true;
+        }
+
+      for (int i=expression.numberOfSubexpressions(); i-->0;)
+        if (rebinds(expression.subexpression(i),name))
+          return true;
+
+      return false;
+    }
+
+  private final Expression _eliminate (Let let)
+    {
+      Scope scope = (Scope)let.function();
+      Expression body = scope.body();
+
+      for (int i=let.arity(); i-->0;)
+        body = _replace(body,scope.parameter(i),let.argument(i));
+
+      return body;
+    }
+
+  /**
+   * Returns the specified expression where every occurrence of the specified
+   * parameter is replaced by the specified value (a constant or a local).
+   */
+  private static final Expression _replace (Expression expression, Parameter parameter,
+                                            Expression value)
+    {
+      if (expression.getClass() == Local.class)
+        {
+          if (((Local)expression).parameter() != parameter)
+            return expression;
+
+          if (value instanceof Local)
+            return new Local(((Local)value).parameter()).setExtent(expression);
+
+          return value;
+        }
+
+      if (expression instanceof UndecidedExpression)
+        {
+          UndecidedExpression undecided = (UndecidedExpression)expression;
+          int choice = undecided.getActualChoiceIndicator();
+
+          if (choice != -1)
+            _replaceSubexpression(undecided,choice,parameter,value);
+
+          return expression;
+        }
+
+      for (int i=expression.numberOfSubexpressions(); i-->0;)
+        _replaceSubexpression(expression,i,parameter,value);
+
+      return expression;
+    }
+
+  private static final void _replaceSubexpression (Expression expression, int n,
+                                                   Parameter parameter, Expression value)
+    {
+      Expression subexpression = expression.subexpression(n);
+      Expression replaced = _replace(subexpression,parameter,value);
+      if (replaced != subexpression)
+        expression.setSubexpression(n,replaced);
+    }
+}
@@ -117,6 +117,11 @@ public class Local extends Expression
       return name == name();
     }  
 
+  public final void collectFreeNames (HashSet names)
+    {
+      names.add(name());
+    }
+
   /**
    * Ascertains that any other type for this local is that of the parameter this stands for.
    */
@@ -148,37 +153,18 @@ public class Local extends Expression
       enclosure.setLocalInfo(this);
     }
 
-  public Expression shiftOffsets (int intShift, int realShift, int objectShift,
-                                  int intDepth, int realDepth, int objectDepth)
-    {
-      switch (boxSort())
-        {
-        case Type.INT_SORT:
-          if (_offset >= intDepth) _offset += intShift;
-          break;
-        case Type.REAL_SORT:
-          if (_offset >= realDepth) _offset += realShift;
-          break;
-          case Type.OBJECT_SORT:
-          if (_offset >= objectDepth) _offset += objectShift;
-          break;
-        }
-
-      return this;
-    }
-
   public void compile (Compiler compiler)
     {   
       switch (boxSort())
         {
         case Type.INT_SORT:
-          compiler.generate(new PushOffsetInt(_offset));
+          compiler.generate(new PushOffsetInt(compiler.offset(Type.INT_SORT,_offset)));
           return;
         case Type.REAL_SORT:
-          compiler.generate(new PushOffsetReal(_offset));
+          compiler.generate(new PushOffsetReal(compiler.offset(Type.REAL_SORT,_offset)));
           return;
         case Type.OBJECT_SORT:
-          compiler.generate(new PushOffsetObject(_offset));
+          compiler.generate(new PushOffsetObject(compiler.offset(Type.OBJECT_SORT,_offset)));
           return;
         }
     }
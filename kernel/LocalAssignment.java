@@ -61,20 +61,20 @@ public class LocalAssignment extends Assignment
         case Type.INT_SORT:
           if (_rhs.checkedType().isBoxedType())
             compiler.generateUnwrapper(Type.INT_SORT);
-          compiler.generate(new SetOffsetInt(((Local)_lhs).offset()));
+          compiler.generate(new SetOffsetInt(compiler.offset(Type.INT_SORT,((Local)_lhs).offset())));
           break;
         case Type.REAL_SORT:
           if (_rhs.checkedType().isBoxedType())
             compiler.generateUnwrapper(Type.REAL_SORT);
-          compiler.generate(new SetOffsetReal(((Local)_lhs).offset()));
+          compiler.generate(new SetOffsetReal(compiler.offset(Type.REAL_SORT,((Local)_lhs).offset())));
           break;
         case Type.OBJECT_SORT:
           if (!_rhs.checkedType().isBoxedType())
             compiler.generateWrapper(_rhs.sort());
-          compiler.generate(new SetOffsetObject(((Local)_lhs).offset()));
+          compiler.generate(new SetOffsetObject(compiler.offset(Type.OBJECT_SORT,((Local)_lhs).offset())));
         }
 
-      if (VOID_ASSIGNMENTS)
+      if (voidAssignments())
         compiler.generateStackPop(_lhs.boxSort());
     }
 }
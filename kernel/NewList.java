@@ -80,7 +80,7 @@ public class NewList extends NewCollection
           for (int i = _elements.length; i--> 0;)
             _elements[i].compile(compiler);
 
-          compiler.generate(new PushValueInt(_elements.length));
+          compiler.generatePushInt(_elements.length);
         }
 
       switch (((ListType)_checkedType).baseType().boxSort())
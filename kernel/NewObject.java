@@ -27,10 +27,10 @@ public class NewObject extends Constant
     {
       if (typeCheckLocked()) return;
 
-      if (!(_type instanceof ClassType))
-        typeChecker.error(locate(new TypingErrorException("bad class type: "+_type)));
+      if (!(typeRef() instanceof ClassType))
+        typeChecker.error(locate(new TypingErrorException("bad class type: "+typeRef())));
 
-      ClassType type = (ClassType)_type;
+      ClassType type = (ClassType)typeRef();
 
       for (int i=type.arity(); i-->0;)
         typeChecker.disallowVoid(type.argument(i),this,"class type instantiation");
@@ -38,11 +38,11 @@ public class NewObject extends Constant
 
   public final void compile (Compiler compiler)
     {
-      compiler.generate(new PushNewObject((ClassType)_type));
+      compiler.generate(new PushNewObject((ClassType)typeRef()));
     }
 
   public final String toString ()
     {
-      return "new "+_type;
+      return "new "+typeRef();
     }
 }
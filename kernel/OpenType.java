@@ -84,7 +84,7 @@ public class OpenType extends ProtoExpression
         typeChecker.error(locate(new TypingErrorException("can't open a non-opaque type: "
                                                           +_expression.type())));
 
-      typeChecker.unify(_type,((DefinedType)_expression.type()).definition(),this);
+      typeChecker.unify(typeRef(),((DefinedType)_expression.type()).definition(),this);
     }
 
   public final void compile (Compiler compiler)
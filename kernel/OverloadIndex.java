@@ -0,0 +1,337 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.design.kernel;
+
+/**
+ * @version     Last modified on Mon Oct 19 11:03:15 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import hlt.language.design.types.*;
+
+import hlt.language.util.ArrayList;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class maintains, for each overloaded <a href="../types/Symbol.html">
+ * <tt>Symbol</tt></a>, an index of its type table used by <a
+ * href="Global.html"><tt>Global</tt></a> to prune the code entries that cannot
+ * possibly unify with its type <i>before</i> attempting the (copying) full
+ * unification. Entries are bucketed by the <i>head</i> of their type: the kind
+ * of type constructor (function, set, list, bag) or the sort of an unboxed basic
+ * type (int or real); for function types, the head of the first argument type
+ * further splits the bucket. Types whose head is not rigid (type parameters,
+ * boxed, defined, or other types) are treated as wildcards that may unify with
+ * anything.
+ *
+ * <p>
+ *
+ * The index is built lazily and rebuilt whenever the symbol's type table has
+ * changed since it was last indexed. Since the type table has no version stamp,
+ * this is detected in constant time by its size and last entry; when a code
+ * entry is registered by a <a href="Definition.html"><tt>Definition</tt></a>,
+ * the index is also invalidated explicitly, and so must it be by any other code
+ * modifying a type table otherwise than by appending to it (see
+ * <tt>invalidate</tt>, which also bumps the symbol's <tt>version</tt>). Indices
+ * are kept in a concurrent map, so that lookups from several type-checking
+ * threads do not contend.
+ *
+ * <p>
+ *
+ * Pruning is conservative: a code entry is discarded only if the heads of its
+ * type and of the type it is matched against are both rigid and different at
+ * the top or at some common argument position, in which case the full
+ * unification would have failed anyway. Hence, the code entries returned are
+ * exactly those that a linear scan would have kept, in the same order. Whether
+ * type tables are indexed at all, and from what size on, is set by the
+ * <tt>indexOverloads</tt> and <tt>minIndexSize</tt> settings installed for the
+ * current thread (see <a href="Settings.html"><tt>Settings</tt></a>); smaller
+ * type tables are scanned linearly.
+ */
+public class OverloadIndex
+{
+  private static final int WILDCARD = -1;
+
+  private static final int FUNCTION = 0;
+  private static final int SET      = 1;
+  private static final int LIST     = 2;
+  private static final int BAG      = 3;
+  private static final int INT      = 4;
+  private static final int REAL     = 5;
+
+  private static final int HEADS    = 6;
+
+  private static final ConcurrentHashMap _indices = new ConcurrentHashMap();
+
+  /**
+   * The code entries of the indexed type table, in order.
+   */
+  private final CodeEntry[] _entries;
+
+  /**
+   * The ordered indices of the entries whose type's head is a wildcard.
+   */
+  private int[] _wildcards;
+
+  /**
+   * For each rigid non-function head, the ordered indices of the entries with
+   * this head.
+   */
+  private int[][] _buckets = new int[HEADS][];
+
+  /**
+   * For each first argument head (shifted by one to account for wildcards), the
+   * ordered indices of the entries with a function type with this first argument
+   * head.
+   */
+  private int[][] _functionBuckets = new int[HEADS+1][];
+
+  private OverloadIndex (ArrayList typeTable)
+    {
+      int size = typeTable.size();
+      _entries = new CodeEntry[size];
+
+      int[] keys = new int[size];
+      int[] counts = new int[2*HEADS+2];
+
+      for (int i=0; i<size; i++)
+        {
+          _entries[i] = (CodeEntry)typeTable.get(i);
+          counts[keys[i] = _key(_entries[i].type())]++;
+        }
+
+      int[][] buckets = new int[counts.length][];
+      for (int k=counts.length; k-->0;)
+        {
+          buckets[k] = new int[counts[k]];
+          counts[k] = 0;
+        }
+
+      for (int i=0; i<size; i++)
+        buckets[keys[i]][counts[keys[i]]++] = i;
+
+      _wildcards = buckets[0];
+      for (int h=0; h<HEADS; h++)
+        _buckets[h] = buckets[1+h];
+      for (int h=0; h<=HEADS; h++)
+        _functionBuckets[h] = buckets[1+HEADS+h];
+    }
+
+  /**
+   * Returns the bucket key of the specified type: 0 for a wildcard, <tt>1+h</tt>
+   * for a non-function type with head <tt>h</tt>, and <tt>1+HEADS+1+h</tt> for
+   * a function type whose first argument has head <tt>h</tt> (which may be a
+   * wildcard).
+   */
+  private static final int _key (Type type)
+    {
+      int head = head(type);
+
+      if (head == WILDCARD)
+        return 0;
+
+      if (head != FUNCTION)
+        return 1+head;
+
+      return 1+HEADS+1+head(((FunctionType)type.value()).domain(0));
+    }
+
+  /**
+   * Returns the rigid head of the specified type, or <tt>WILDCARD</tt> if the
+   * type may unify with types of different heads.
+   */
+  public static final int head (Type type)
+    {
+      type = type.value();
+
+      switch (type.kind())
+        {
+        case Type.FUNCTION:
+          return FUNCTION;
+        case Type.SET:
+          return SET;
+        case Type.LIST:
+          return LIST;
+        case Type.BAG:
+          return BAG;
+        case Type.BOXABLE:
+          if (type.isBoxedType())
+            return WILDCARD;
+          switch (type.sort())
+            {
+            case Type.INT_SORT:
+              return INT;
+            case Type.REAL_SORT:
+              return REAL;
+            }
+        }
+
+      return WILDCARD;
+    }
+
+  /**
+   * Returns <tt>false</tt> only if the specified types cannot possibly unify
+   * because their heads, or those of their argument types at some common
+   * position, are rigid and different. This never copies nor binds any type.
+   */
+  public static final boolean mayUnify (Type t1, Type t2)
+    {
+      int h1 = head(t1);
+      int h2 = head(t2);
+
+      if (h1 == WILDCARD || h2 == WILDCARD)
+        return true;
+
+      if (h1 != h2)
+        return false;
+
+      if (h1 != FUNCTION)
+        return true;
+
+      FunctionType f1 = (FunctionType)t1.value();
+      FunctionType f2 = (FunctionType)t2.value();
+
+      for (int i=Math.min(f1.arity(),f2.arity()); i-->0;)
+        {
+          h1 = head(f1.domain(i));
+          h2 = head(f2.domain(i));
+
+          if (h1 != WILDCARD && h2 != WILDCARD && h1 != h2)
+            return false;
+        }
+
+      return true;
+    }
+
+  /**
+   * Returns the code entries of the specified symbol's type table whose types
+   * may unify with the specified type, in type table order.
+   */
+  public static final ArrayList candidates (Symbol symbol, Type type)
+    {
+      ArrayList typeTable = symbol.typeTable();
+
+      Settings settings = Settings.current();
+
+      if (!settings.indexOverloads() || typeTable.size() < settings.minIndexSize()
+          || head(type) == WILDCARD)
+        return typeTable;
+
+      return _index(symbol,typeTable)._candidates(type);
+    }
+
+  private static final OverloadIndex _index (Symbol symbol, ArrayList typeTable)
+    {
+      OverloadIndex index = (OverloadIndex)_indices.get(symbol);
+
+      if (index == null || !index._indexes(typeTable))
+        _indices.put(symbol,index = new OverloadIndex(typeTable));
+
+      return index;
+    }
+
+  /**
+   * Discards the index of the specified symbol, if any. This must be called
+   * whenever the symbol's type table is modified otherwise than by appending
+   * a code entry to it.
+   */
+  public static final void invalidate (Symbol symbol)
+    {
+      _indices.remove(symbol);
+      _version(symbol).incrementAndGet();
+    }
+
+  /**
+   * The version counters of the symbols whose type tables have been modified.
+   */
+  private static final ConcurrentHashMap _versions = new ConcurrentHashMap();
+
+  /**
+   * Returns the version of the specified symbol's type table: this is bumped
+   * by each call to <tt>invalidate</tt>, hence by each code entry registered
+   * for this symbol by a <a href="Definition.html"><tt>Definition</tt></a> -
+   * whether it is added to the type table or replaces one of its entries.
+   */
+  public static final int version (Symbol symbol)
+    {
+      AtomicInteger version = (AtomicInteger)_versions.get(symbol);
+      return version == null ? 0 : version.get();
+    }
+
+  private static final AtomicInteger _version (Symbol symbol)
+    {
+      AtomicInteger version = (AtomicInteger)_versions.get(symbol);
+
+      if (version == null)
+        {
+          AtomicInteger previous = (AtomicInteger)_versions.putIfAbsent(symbol,version = new AtomicInteger());
+          if (previous != null)
+            version = previous;
+        }
+
+      return version;
+    }
+
+  /**
+   * Returns <tt>true</tt> iff this index is (presumably) up to date with the
+   * specified type table - <i>i.e.</i>, it has the same size and last entry.
+   */
+  private final boolean _indexes (ArrayList typeTable)
+    {
+      int size = typeTable.size();
+
+      return size == _entries.length
+          && (size == 0 || typeTable.get(size-1) == _entries[size-1]);
+    }
+
+  private final ArrayList _candidates (Type type)
+    {
+      int head = head(type);
+      int[] selection = _wildcards;
+
+      if (head != FUNCTION)
+        selection = _merge(selection,_buckets[head]);
+      else
+        {
+          int argumentHead = head(((FunctionType)type.value()).domain(0));
+
+          if (argumentHead == WILDCARD)
+            for (int h=0; h<=HEADS; h++)
+              selection = _merge(selection,_functionBuckets[h]);
+          else
+            {
+              selection = _merge(selection,_functionBuckets[0]);
+              selection = _merge(selection,_functionBuckets[1+argumentHead]);
+            }
+        }
+
+      ArrayList candidates = new ArrayList(selection.length);
+
+      for (int i=0; i<selection.length; i++)
+        if (mayUnify(_entries[selection[i]].type(),type))
+          candidates.add(_entries[selection[i]]);
+
+      return candidates;
+    }
+
+  /**
+   * Merges two ordered arrays of disjoint indices into one ordered array.
+   */
+  private static final int[] _merge (int[] a, int[] b)
+    {
+      if (b.length == 0) return a;
+      if (a.length == 0) return b;
+
+      int[] c = new int[a.length+b.length];
+
+      for (int i=0, j=0, k=0; k<c.length; k++)
+        c[k] = j == b.length || i < a.length && a[i] < b[j] ? a[i++] : b[j++];
+
+      return c;
+    }
+}
@@ -0,0 +1,398 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.design.kernel;
+
+/**
+ * @version     Last modified on Mon Oct 19 10:12:37 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import hlt.language.design.types.*;
+
+import hlt.language.util.ArrayList;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This is a driver for type-checking a batch of name-sanitized <a
+ * href="Definition.html"><tt>Definition</tt></a>s concurrently, with the same
+ * outcome as checking them one after the other in batch order. A definition
+ * <i>depends</i> on every definition that comes before it in the batch and
+ * defines a symbol occurring as a <a href="Global.html"><tt>Global</tt></a> in
+ * its body - these are the only definitions of the batch whose code entries
+ * a sequential check would see. Conversely, a definition that comes after it
+ * and defines such a symbol must not be seen, and so depends on it; and a
+ * definition depends on the earlier definitions of its own symbol, so that
+ * code entries are registered in batch order. The definitions are then
+ * processed by <i>levels</i>: a definition's level is one more than the highest
+ * level of the definitions it depends on. All the definitions of a same level
+ * are independent, and each is type-checked on a separate <a
+ * href="../types/TypeChecker.html"><tt>TypeChecker</tt></a> by a pool of worker
+ * threads.
+ *
+ * <p>
+ *
+ * Once all the definitions of a level have been checked, their results are
+ * merged into the shared symbol tables by the calling thread only: the checked
+ * types of all the definitions of the level are set and their code entries are
+ * registered, in batch order. This makes the outcome independent of thread
+ * scheduling, and ensures that the definitions of a level see the registered
+ * code entries of all those they depend on. Likewise, if type-checking fails,
+ * the error reported is that of the first failing definition in batch order.
+ * The batch then retains only the definitions that have not been merged: the
+ * type bindings of those that failed are undone and they are unlocked, so that
+ * they may be type-checked again, while those that were checked successfully
+ * are merged as they are by the next call to <tt>typeCheck</tt>.
+ *
+ * <p>
+ *
+ * The worker threads type-check with the <a href="Settings.html"><tt>Settings</tt></a>
+ * installed for the thread calling <tt>typeCheck</tt>.
+ */
+public class ParallelTypeChecker
+{
+  /**
+   * This is the interface of objects providing a fresh <a
+   * href="../types/TypeChecker.html"><tt>TypeChecker</tt></a> for each
+   * definition to check.
+   */
+  public static interface TypeCheckerFactory
+    {
+      public TypeChecker newTypeChecker ();
+    }
+
+  private TypeCheckerFactory _factory;
+  private int _threads;
+
+  /**
+   * The definitions of the batch, in the order in which they were added.
+   */
+  private ArrayList _definitions = new ArrayList();
+
+  /**
+   * Creates a driver checking independent definitions on as many threads as
+   * there are available processors.
+   */
+  public ParallelTypeChecker (TypeCheckerFactory factory)
+    {
+      this(factory,Runtime.getRuntime().availableProcessors());
+    }
+
+  public ParallelTypeChecker (TypeCheckerFactory factory, int threads)
+    {
+      _factory = factory;
+      _threads = Math.max(1,threads);
+    }
+
+  /**
+   * Adds the specified definition to this driver's batch. This throws an
+   * <tt>IllegalArgumentException</tt> if the definition's body has been released
+   * (see <a href="Definition.html#releaseBody()"><tt>Definition.releaseBody</tt></a>).
+   */
+  public final ParallelTypeChecker add (Definition definition)
+    {
+      if (definition.isReleased())
+        throw new IllegalArgumentException("cannot type-check the released definition of "
+                                           +definition.symbol());
+
+      _definitions.add(definition);
+      return this;
+    }
+
+  public final int size ()
+    {
+      return _definitions.size();
+    }
+
+  /**
+   * Type-checks all the definitions added to this driver, then sets their
+   * checked types and registers their code entries. The batch is cleared
+   * when this returns normally; otherwise, it retains the definitions that
+   * have not been registered.
+   */
+  public final void typeCheck () throws TypingErrorException, DefinitionException
+    {
+      int[] levels = _levels(_referenceGraph());
+      boolean[] merged = new boolean[levels.length];
+
+      int maxLevel = -1;
+      for (int i=0; i<levels.length; i++)
+        maxLevel = Math.max(maxLevel,levels[i]);
+
+      ExecutorService pool = _threads == 1 ? null : Executors.newFixedThreadPool(_threads);
+
+      try
+        {
+          for (int level=0; level<=maxLevel; level++)
+            {
+              int size = 0;
+              for (int i=0; i<levels.length; i++)
+                if (levels[i] == level)
+                  size++;
+
+              int[] indices = new int[size];
+              size = 0;
+              for (int i=0; i<levels.length; i++)
+                if (levels[i] == level)
+                  indices[size++] = i;
+
+              _typeCheck(indices,pool);
+              _merge(indices,merged);
+            }
+        }
+      finally
+        {
+          if (pool != null) pool.shutdownNow();
+          _retainUnmerged(merged);
+        }
+    }
+
+  /**
+   * Type-checks the specified definitions concurrently, each on its own
+   * type-checker, and throws the error of the first failing definition in
+   * batch order if any.
+   */
+  private final void _typeCheck (int[] indices, ExecutorService pool)
+    throws TypingErrorException
+    {
+      Exception[] errors = new Exception[_definitions.size()];
+
+      if (pool == null || indices.length == 1)
+        for (int i=0; i<indices.length; i++)
+          _typeCheck(indices[i],errors);
+      else
+        {
+          Future[] futures = new Future[indices.length];
+          Settings settings = Settings.current();
+
+          for (int i=0; i<futures.length; i++)
+            futures[i] = pool.submit(new DefinitionTask(indices[i],errors,settings));
+
+          for (int i=0; i<futures.length; i++)
+            try
+              {
+                futures[i].get();
+              }
+            catch (InterruptedException e)
+              {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("interrupted while type-checking definitions");
+              }
+            catch (ExecutionException e)
+              {
+                if (e.getCause() instanceof Error)
+                  throw (Error)e.getCause();
+                throw new RuntimeException(e.getCause());
+              }
+        }
+
+      for (int i=0; i<errors.length; i++)
+        if (errors[i] instanceof TypingErrorException)
+          throw (TypingErrorException)errors[i];
+        else
+          if (errors[i] != null)
+            throw (RuntimeException)errors[i];
+    }
+
+  /**
+   * Type-checks the specified definition on a new type-checker, recording its
+   * failure if any in the specified array at the index of the definition. On
+   * failure, all the type bindings made by the check are undone, and the
+   * definition is unlocked, so that it may be type-checked again.
+   */
+  private final void _typeCheck (int index, Exception[] errors)
+    {
+      Definition definition = (Definition)_definitions.get(index);
+      TypeChecker typeChecker = _factory.newTypeChecker();
+
+      typeChecker.pushCutPoint();
+      try
+        {
+          definition.typeCheck(typeChecker);
+          typeChecker.popCutPoint();
+          return;
+        }
+      catch (TypingErrorException e)
+        {
+          errors[index] = e;
+        }
+      catch (RuntimeException e)
+        {
+          errors[index] = e;
+        }
+
+      typeChecker.undoCutPoint(); // this will also pop the cut-point
+      definition.unlockTypeCheck();
+    }
+
+  /**
+   * Sets the checked types and registers the code entries of the specified
+   * definitions (which are in batch order), marking them as merged.
+   */
+  private final void _merge (int[] indices, boolean[] merged) throws DefinitionException
+    {
+      for (int i=0; i<indices.length; i++)
+        {
+          Definition definition = (Definition)_definitions.get(indices[i]);
+          definition.setCheckedType();
+          definition.registerCodeEntry();
+          merged[indices[i]] = true;
+        }
+    }
+
+  /**
+   * Removes the merged definitions from the batch. Of those remaining, the ones
+   * that failed have been reset (see <tt>_typeCheck</tt>), and the ones that were
+   * checked successfully stay so: as all the definitions they depend on have been
+   * merged, their checks remain valid, and they are merged as they are by the
+   * next call to <tt>typeCheck</tt>.
+   */
+  private final void _retainUnmerged (boolean[] merged)
+    {
+      ArrayList unmerged = new ArrayList();
+
+      for (int i=0; i<merged.length; i++)
+        if (!merged[i])
+          unmerged.add(_definitions.get(i));
+
+      _definitions = unmerged;
+    }
+
+  /**
+   * Returns, for each definition, the indices of the definitions it must be
+   * merged after: the earlier definitions of the symbols it references, whose
+   * code entries it must see; the earlier definitions of its own symbol, so that
+   * code entries are registered in batch order; and the earlier definitions
+   * referencing its symbol, which must not see its code entry. All these come
+   * before it in the batch.
+   */
+  private final int[][] _referenceGraph ()
+    {
+      HashMap definers = new HashMap();
+
+      for (int i=0; i<_definitions.size(); i++)
+        {
+          Symbol symbol = ((Definition)_definitions.get(i)).symbol();
+          ArrayList indices = (ArrayList)definers.get(symbol);
+          if (indices == null)
+            definers.put(symbol,indices = new ArrayList());
+          indices.add(new Integer(i));
+        }
+
+      HashSet[] predecessors = new HashSet[_definitions.size()];
+      for (int i=predecessors.length; i-->0;)
+        predecessors[i] = new HashSet();
+
+      for (int i=0; i<predecessors.length; i++)
+        {
+          Definition definition = (Definition)_definitions.get(i);
+
+          ArrayList homonyms = (ArrayList)definers.get(definition.symbol());
+          for (int j=0; ((Integer)homonyms.get(j)).intValue() < i; j++)
+            predecessors[i].add(homonyms.get(j));
+
+          HashSet symbols = new HashSet();
+          _collectGlobals(definition.subexpression(0),symbols);
+
+          for (Iterator s=symbols.iterator(); s.hasNext();)
+            {
+              ArrayList indices = (ArrayList)definers.get(s.next());
+              if (indices != null)
+                for (int j=0; j<indices.size(); j++)
+                  {
+                    int k = ((Integer)indices.get(j)).intValue();
+                    if (k < i)
+                      predecessors[i].add(indices.get(j));
+                    else
+                      if (k > i)
+                        predecessors[k].add(new Integer(i));
+                  }
+            }
+        }
+
+      int[][] graph = new int[predecessors.length][];
+
+      for (int i=0; i<graph.length; i++)
+        {
+          graph[i] = new int[predecessors[i].size()];
+          int j = 0;
+          for (Iterator p=predecessors[i].iterator(); p.hasNext();)
+            graph[i][j++] = ((Integer)p.next()).intValue();
+        }
+
+      return graph;
+    }
+
+  private static final void _collectGlobals (Expression expression, HashSet symbols)
+    {
+      if (expression instanceof Global)
+        {
+          symbols.add(((Global)expression).symbol());
+          return;
+        }
+
+      for (int i=expression.numberOfSubexpressions(); i-->0;)
+        _collectGlobals(expression.subexpression(i),symbols);
+    }
+
+  /**
+   * Returns the level of each definition given the specified dependency graph.
+   * Since a definition only has predecessors before it, this is computed
+   * in a single pass in batch order.
+   */
+  private static final int[] _levels (int[][] graph)
+    {
+      int[] levels = new int[graph.length];
+
+      for (int i=0; i<graph.length; i++)
+        for (int j=0; j<graph[i].length; j++)
+          levels[i] = Math.max(levels[i],1+levels[graph[i][j]]);
+
+      return levels;
+    }
+
+  /**
+   * This is the task type-checking one definition on a worker thread, with the
+   * specified settings.
+   */
+  private final class DefinitionTask implements Callable
+    {
+      private int _index;
+      private Exception[] _errors;
+      private Settings _settings;
+
+      DefinitionTask (int index, Exception[] errors, Settings settings)
+        {
+          _index = index;
+          _errors = errors;
+          _settings = settings;
+        }
+
+      public final Object call ()
+        {
+          Settings previous = Settings.install(_settings);
+
+          try
+            {
+              _typeCheck(_index,_errors);
+            }
+          finally
+            {
+              Settings.install(previous);
+            }
+
+          return null;
+        }
+    }
+}
@@ -13,6 +13,8 @@ package hlt.language.design.kernel;
 import hlt.language.design.types.*;
 import hlt.language.design.instructions.*;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class Parameter extends ProtoExpression
 {
   private String _name;
@@ -21,11 +23,15 @@ public class Parameter extends ProtoExpression
   final static Parameter VOID = new Parameter("");
   static { VOID.setType(Type.VOID); }
 
-  private static int _nameCounter;
+  /**
+   * This counter numbers the names of internal parameters; it is atomic so that
+   * expressions may be built and compiled on several threads at once.
+   */
+  private static final AtomicInteger _nameCounter = new AtomicInteger();
 
   public Parameter ()
     {
-      _name = ("?"+(_nameCounter++)).intern();
+      _name = ("?"+_nameCounter.getAndIncrement()).intern();
       _isInternal = true;
     }
 
@@ -48,7 +54,7 @@ public class Parameter extends ProtoExpression
 
   public Parameter (Dummy dummy)
     {
-      this(dummy.name());
+      _name = dummy.name(); // already interned
       addTypes(dummy);
     }
 
@@ -82,7 +88,7 @@ public class Parameter extends ProtoExpression
     {
       if (typeCheckLocked()) return;
 
-      typeChecker.typeCheck(this,_type);
+      typeChecker.typeCheck(this,typeRef());
     }
 
   /**
@@ -10,20 +10,128 @@ package hlt.language.design.kernel;
  * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
  */
 
+import hlt.language.design.types.*;
+
 import hlt.language.util.Stack;
 
+import java.util.HashMap;
+
+/**
+ * This is the stack of <a href="Parameter.html"><tt>Parameter</tt></a>s in scope
+ * while sanitizing names. Besides the stack itself, it maintains a hashed index
+ * mapping each name to its innermost binding (which records the binding it
+ * shadows), so that looking up a name takes constant time regardless of the
+ * depth of nesting. Parameters should be pushed and popped with <tt>bind</tt>
+ * and <tt>unbind</tt>, which keep the index up to date; should the stack be
+ * otherwise modified, the index is rebuilt on the next lookup.
+ *
+ * <p>
+ *
+ * This also caches the symbols of the free names resolved as globals in a given
+ * <a href="../types/Tables.html"><tt>Tables</tt></a>, so that each name is looked
+ * up only once in the symbol table.
+ */
 public class ParameterStack extends Stack
 {
+  private HashMap _bindings = new HashMap();
+  private int _indexedSize = 0;
+  private Object _indexedTop = null;
+
+  private Tables _tables;
+  private HashMap _symbols = new HashMap();
+
+  /**
+   * Pushes the specified parameter, making it the innermost binding of its name.
+   */
+  public final void bind (Parameter parameter)
+    {
+      _checkIndex();
+      push(parameter);
+      _index(parameter);
+      _markIndexed();
+    }
+
+  /**
+   * Pops the innermost parameter, restoring the binding of its name it shadowed.
+   */
+  public final void unbind ()
+    {
+      _checkIndex();
+      Parameter parameter = (Parameter)get(size()-1);
+      Binding binding = (Binding)_bindings.get(parameter.name());
+
+      if (binding != null && binding.parameter == parameter)
+        if (binding.shadowed == null)
+          _bindings.remove(parameter.name());
+        else
+          _bindings.put(parameter.name(),binding.shadowed);
+
+      pop();
+      _markIndexed();
+    }
+
   public final Parameter getLocalParameter (String name)
     {
-      for (int i = size(); i-->0;)
+      _checkIndex();
+      Binding binding = (Binding)_bindings.get(name);
+      return binding == null ? null : binding.parameter;
+    }
+
+  /**
+   * Returns the symbol of the specified name in the specified tables.
+   */
+  public final Symbol symbol (Tables tables, String name)
+    {
+      if (tables != _tables)
         {
-          Parameter parameter = (Parameter)get(i);
-          if (parameter.name() == name)
-            return parameter;
+          _tables = tables;
+          _symbols.clear();
         }
 
-      return null;
+      Symbol symbol = (Symbol)_symbols.get(name);
+      if (symbol == null)
+        _symbols.put(name,symbol = tables.symbol(name));
+
+      return symbol;
+    }
+
+  private final void _index (Parameter parameter)
+    {
+      _bindings.put(parameter.name(),
+                    new Binding(parameter,(Binding)_bindings.get(parameter.name())));
+    }
+
+  private final void _markIndexed ()
+    {
+      _indexedSize = size();
+      _indexedTop = _indexedSize == 0 ? null : get(_indexedSize-1);
+    }
+
+  /**
+   * Rebuilds the index if this stack has been modified other than by <tt>bind</tt>
+   * and <tt>unbind</tt>.
+   */
+  private final void _checkIndex ()
+    {
+      if (size() == _indexedSize && (_indexedSize == 0 || get(_indexedSize-1) == _indexedTop))
+        return;
+
+      _bindings.clear();
+      for (int i=0; i<size(); i++)
+        _index((Parameter)get(i));
+      _markIndexed();
+    }
+
+  private static final class Binding
+    {
+      Parameter parameter;
+      Binding shadowed;
+
+      Binding (Parameter parameter, Binding shadowed)
+        {
+          this.parameter = parameter;
+          this.shadowed = shadowed;
+        }
     }
 
   public final String toString ()
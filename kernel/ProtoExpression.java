@@ -18,12 +18,19 @@ import hlt.language.design.types.*;
  */
 public abstract class ProtoExpression extends Expression
 {
-  protected Type _type = new TypeParameter();
+  /**
+   * This expression's type; it is allocated only when first needed (see
+   * <tt>typeRef()</tt>) since most expressions are given their type either
+   * at construction or by sharing another one's, and many are discarded
+   * (<i>e.g.</i>, when sanitized) before being typed at all. So, subclasses
+   * must access it through <tt>typeRef()</tt> rather than directly.
+   */
+  protected Type _type;
   protected Type _checkedType;
 
   public final Type type ()
     {
-      return _type.value();
+      return typeRef().value();
     }
 
   public final void setType (Type type)
@@ -33,6 +40,9 @@ public abstract class ProtoExpression extends Expression
 
   public final Type typeRef ()
     {
+      if (_type == null)
+        _type = new TypeParameter();
+
       return _type;
     }
 
@@ -48,7 +48,7 @@ public class Real extends Constant
 
   public final void compile (Compiler compiler)
     {
-      compiler.generate(new PushValueReal(_value));
+      compiler.generatePushReal(_value);
     }
 
   public final boolean equals (Object other)
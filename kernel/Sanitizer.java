@@ -24,8 +24,14 @@ public class Sanitizer
       return e.sanitizeNames(stack);
     }
 
+  /**
+   * Sanitizes the sorts of the specified expression after eliminating the trivial
+   * <a href="Let.html"><tt>Let</tt></a>s it contains (see <a href="LetSimplifier.html">
+   * <tt>LetSimplifier</tt></a>).
+   */
   public static final void sanitizeSorts (Expression e)
     {
+      LetSimplifier.simplifyWithin(e);
       e.sanitizeSorts(new Enclosure());
     }
 }
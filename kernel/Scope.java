@@ -240,7 +240,7 @@ public class Scope extends ProtoExpression
           parameterTypes[i] = _parameters[i].typeRef();
         }
       
-      typeChecker.unify(_type,new FunctionType(parameterTypes,_body.typeRef()),this);
+      typeChecker.unify(typeRef(),new FunctionType(parameterTypes,_body.typeRef()),this);
       _body.typeCheck(typeChecker);
     }
 
@@ -252,6 +252,16 @@ public class Scope extends ProtoExpression
       return _body.containsFreeName(name);
     }  
 
+  public final void collectFreeNames (HashSet names)
+    {
+      HashSet bodyNames = _body.freeNames();
+
+      for (int i = _parameters.length; i-->0;)
+        bodyNames.remove(_parameters[i].name());
+
+      names.addAll(bodyNames);
+    }
+
   private Expression _enclosingScope;
 
   final public Expression enclosingScope ()
@@ -300,46 +310,47 @@ public class Scope extends ProtoExpression
   public final Expression sanitizeNames (ParameterStack parameters)
     {
       for (int i=0; i<_parameters.length; i++)
-        parameters.push(_parameters[i]);
+        parameters.bind(_parameters[i]);
 
       _body = _body.sanitizeNames(parameters);
 
       for (int i=0; i<_parameters.length; i++)
-        parameters.pop();
+        parameters.unbind();
 
       return this;
     }
 
   protected boolean _isSortSanitized = false;
 
+  public final boolean isSortSanitized ()
+    {
+      return _isSortSanitized;
+    }
+
   public void sanitizeSorts (Enclosure enclosure)
     {
       if (_isSortSanitized) return;
 
-      enclosure.push(this);
+      enclosure.enter(this);
       _body.sanitizeSorts(enclosure);
-      enclosure.pop();
+      enclosure.exit();
 
       _isSortSanitized = true;
     }
 
-  public Expression shiftOffsets (int intShift, int realShift, int objectShift,
-                                  int intDepth, int realDepth, int objectDepth)
-    {
-      _body = _body.shiftOffsets(intShift,realShift,objectShift,
-                                 intDepth+_intArity,realDepth+_realArity,objectDepth+_objectArity);
-
-      return this;
-    }
-
   protected PushScope _pushInstruction ()
     {
       return new PushScope(voidArity(),_intArity,_realArity,_objectArity);
     }
 
-  public final void compile (Compiler compiler)
+  /**
+   * <b>NB:</b> this is not <tt>final</tt> because it is overridden in
+   * <a href="Abstraction.html"><tt>Abstraction</tt></a>.
+   */
+  public void compile (Compiler compiler)
     {
-      compiler.generate(_pushInstruction(),_body);
+      compiler.generate(_pushInstruction(),_body,
+                        compiler.enterScope(_intArity,_realArity,_objectArity));
     }
 
   public String toString ()
@@ -0,0 +1,241 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.design.kernel;
+
+/**
+ * @version     Last modified on Mon Oct 19 18:12:40 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+/**
+ * This is the class of the settings altering the way the kernel's front end
+ * processes expressions:
+ * <ul>
+ * <li> <tt>voidAssignments</tt>: whether assignments have type <tt>void</tt>
+ *      (see <a href="Expression.html#VOID_ASSIGNMENTS"><tt>Expression.VOID_ASSIGNMENTS</tt></a>);
+ * <li> <tt>opaqueParameters</tt>: whether a comprehension's generator pattern that
+ *      is a plain name is a new parameter (see <a href="Comprehension.html#OPAQUE_PARAMETERS">
+ *      <tt>Comprehension.OPAQUE_PARAMETERS</tt></a>);
+ * <li> <tt>simplifyLets</tt>: whether trivial <tt>Let</tt>s are simplified (see
+ *      <a href="LetSimplifier.html"><tt>LetSimplifier</tt></a>);
+ * <li> <tt>indexOverloads</tt> and <tt>minIndexSize</tt>: whether, and from what
+ *      number of overloads on, a symbol's overloads are indexed (see <a
+ *      href="OverloadIndex.html"><tt>OverloadIndex</tt></a>);
+ * <li> <tt>lcoIsEffective</tt>: whether last call optimization is made effective;
+ * <li> <tt>scopeAppliedAbstractions</tt>: whether an abstraction immediately
+ *      applied to all its arguments is compiled as a plain scope (see <a
+ *      href="Abstraction.html#isLocallyApplicable(int)"><tt>Abstraction.isLocallyApplicable</tt></a>);
+ * <li> <tt>sharePaddedClosures</tt>: whether the padded closures of global
+ *      functions are shared (see <a href="Compiler.html#compilePadded"><tt>Compiler.compilePadded</tt></a>);
+ * <li> <tt>retention</tt>: whether compiled definitions keep their typed bodies
+ *      (see <a href="Compiler.html#RETAIN_TYPED_TREES"><tt>Compiler.RETAIN_TYPED_TREES</tt></a>).
+ * </ul>
+ *
+ * Each <a href="Compiler.html"><tt>Compiler</tt></a> has its settings, which the
+ * compilers it creates for its own needs share. The phases that have no such
+ * context of their own (<i>i.e.</i>, sanitizing and type-checking) read the
+ * settings <i>installed</i> for the current thread (see <tt>current</tt>): a
+ * compiler installs its settings while it compiles, and a <a href="FrontEnd.html">
+ * <tt>FrontEnd</tt></a> installs its compiler's settings while it processes an
+ * expression, so that all the phases agree. A thread where no settings are
+ * installed reads default settings. Hence, threads processing expressions with
+ * different settings do not interfere.
+ *
+ * <p>
+ *
+ * The <tt>voidAssignments</tt>, <tt>opaqueParameters</tt>, and
+ * <tt>lcoIsEffective</tt> settings predate this class as the global flags <a
+ * href="Expression.html#VOID_ASSIGNMENTS"><tt>Expression.VOID_ASSIGNMENTS</tt></a>,
+ * <a href="Comprehension.html#OPAQUE_PARAMETERS"><tt>Comprehension.OPAQUE_PARAMETERS</tt></a>,
+ * and <a href="Compiler.html#LCO_IS_EFFECTIVE"><tt>Compiler.LCO_IS_EFFECTIVE</tt></a>.
+ * As long as such a setting has not been set explicitly on a settings object,
+ * this object reads the current value of its global flag, so that code toggling
+ * these flags keeps affecting all compilers and threads as before.
+ *
+ * <p>
+ *
+ * <b>NB:</b> a settings object is not itself synchronized; it is meant to be set
+ * up before the threads using it start.
+ */
+public class Settings
+{
+  /**
+   * These are <tt>null</tt> until set explicitly, in which case their global
+   * flags are read instead.
+   */
+  private Boolean _voidAssignments;
+  private Boolean _opaqueParameters;
+  private Boolean _lcoIsEffective;
+
+  private boolean _simplifyLets = true;
+  private boolean _indexOverloads = true;
+  private int _minIndexSize = 4;
+  private boolean _scopeAppliedAbstractions = true;
+  private boolean _sharePaddedClosures = true;
+  private int _retention = Compiler.RETAIN_TYPED_TREES;
+
+  /**
+   * Creates and returns new default settings.
+   */
+  public Settings ()
+    {
+    }
+
+  /**
+   * Returns a copy of these settings.
+   */
+  public final Settings copy ()
+    {
+      Settings copy = new Settings();
+
+      copy._voidAssignments = _voidAssignments;
+      copy._opaqueParameters = _opaqueParameters;
+      copy._simplifyLets = _simplifyLets;
+      copy._indexOverloads = _indexOverloads;
+      copy._minIndexSize = _minIndexSize;
+      copy._lcoIsEffective = _lcoIsEffective;
+      copy._scopeAppliedAbstractions = _scopeAppliedAbstractions;
+      copy._sharePaddedClosures = _sharePaddedClosures;
+      copy._retention = _retention;
+
+      return copy;
+    }
+
+  /**
+   * The settings installed for each thread.
+   */
+  private static final ThreadLocal _CURRENT = new ThreadLocal()
+    {
+      protected Object initialValue ()
+        {
+          return new Settings();
+        }
+    };
+
+  /**
+   * Returns the settings installed for the current thread.
+   */
+  public static final Settings current ()
+    {
+      return (Settings)_CURRENT.get();
+    }
+
+  /**
+   * Installs the specified settings for the current thread, and returns those
+   * they replace - which the caller should reinstall when done.
+   */
+  public static final Settings install (Settings settings)
+    {
+      Settings previous = current();
+      _CURRENT.set(settings);
+      return previous;
+    }
+
+  public final boolean voidAssignments ()
+    {
+      return _voidAssignments == null ? Expression.VOID_ASSIGNMENTS
+                                      : _voidAssignments.booleanValue();
+    }
+
+  public final Settings setVoidAssignments (boolean flag)
+    {
+      _voidAssignments = Boolean.valueOf(flag);
+      return this;
+    }
+
+  public final boolean opaqueParameters ()
+    {
+      return _opaqueParameters == null ? Comprehension.OPAQUE_PARAMETERS
+                                       : _opaqueParameters.booleanValue();
+    }
+
+  public final Settings setOpaqueParameters (boolean flag)
+    {
+      _opaqueParameters = Boolean.valueOf(flag);
+      return this;
+    }
+
+  public final boolean simplifyLets ()
+    {
+      return _simplifyLets;
+    }
+
+  public final Settings setSimplifyLets (boolean flag)
+    {
+      _simplifyLets = flag;
+      return this;
+    }
+
+  public final boolean indexOverloads ()
+    {
+      return _indexOverloads;
+    }
+
+  public final Settings setIndexOverloads (boolean flag)
+    {
+      _indexOverloads = flag;
+      return this;
+    }
+
+  public final int minIndexSize ()
+    {
+      return _minIndexSize;
+    }
+
+  public final Settings setMinIndexSize (int size)
+    {
+      _minIndexSize = size;
+      return this;
+    }
+
+  public final boolean lcoIsEffective ()
+    {
+      return _lcoIsEffective == null ? Compiler.LCO_IS_EFFECTIVE
+                                     : _lcoIsEffective.booleanValue();
+    }
+
+  public final Settings setLCO (boolean flag)
+    {
+      _lcoIsEffective = Boolean.valueOf(flag);
+      return this;
+    }
+
+  public final boolean scopeAppliedAbstractions ()
+    {
+      return _scopeAppliedAbstractions;
+    }
+
+  public final Settings setScopeAppliedAbstractions (boolean flag)
+    {
+      _scopeAppliedAbstractions = flag;
+      return this;
+    }
+
+  public final boolean sharePaddedClosures ()
+    {
+      return _sharePaddedClosures;
+    }
+
+  public final Settings setSharePaddedClosures (boolean flag)
+    {
+      _sharePaddedClosures = flag;
+      return this;
+    }
+
+  public final int retention ()
+    {
+      return _retention;
+    }
+
+  public final Settings setRetention (int retention)
+    {
+      if (retention != Compiler.RETAIN_TYPED_TREES && retention != Compiler.RELEASE_TYPED_TREES)
+        throw new IllegalArgumentException("unknown retention policy: "+retention);
+
+      _retention = retention;
+      return this;
+    }
+}
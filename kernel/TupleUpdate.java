@@ -101,7 +101,7 @@ public class TupleUpdate extends ProtoExpression
 
       typeChecker.disallowVoid(_value.type(),_value,"assigned value");
 
-      if (VOID_ASSIGNMENTS)
+      if (voidAssignments())
         {
           typeChecker.unify(_component.typeRef(),_value.typeRef());
           typeChecker.typeCheck(this,Type.VOID);
@@ -141,7 +141,7 @@ public class TupleUpdate extends ProtoExpression
       byte sort = _componentIsBoxed ? Type.OBJECT_SORT : _value.sort();
       compiler.generate(_setTupleComponent(sort));
 
-      if (VOID_ASSIGNMENTS)
+      if (voidAssignments())
         compiler.generateStackPop(sort);
     }
 
@@ -5,7 +5,7 @@
 package hlt.language.design.kernel;
 
 /**
- * @version     Last modified on Thu Mar 24 12:07:15 2016 by hak
+ * @version     Last modified on Mon Oct 19 11:41:08 2026 by hak
  * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
  * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
  */
@@ -13,6 +13,12 @@ package hlt.language.design.kernel;
 import hlt.language.design.types.*;
 import hlt.language.design.instructions.*;
 
+import hlt.language.util.ArrayList;
+
+import java.util.HashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * This class denotes an expression as a yet undecided choice between two
  * expressions. It is used for an expression that may be either of two options
@@ -30,12 +36,39 @@ import hlt.language.design.instructions.*;
  * within similar expressions. The typechecker maintains a stack of cut-point
  * states to ensure that the correct typing context is recovered for each such
  * undecided expression choice.
+ *
+ * <p>
+ *
+ * Since the choice depends only on the syntax of the options, two measures
+ * avoid type-checking a first option that is bound to fail:
+ * <ul>
+ * <li> a <i>structural pre-filter</i> rejects the first option without
+ *      type-checking it if it is an abstraction or a collection constructor
+ *      whose type constructor cannot match the head of the expected type;
+ * <li> the failure of the first option is <i>memoized</i> in a <tt>Decision</tt>
+ *      shared by all the copies of this expression, so that copies checked in
+ *      the same typing context go straight to the second option. This context
+ *      is keyed by the standardized function type from the types of the free
+ *      locals of the first option to the expected type (which captures the
+ *      variables these types share), together with the version of the type
+ *      table of each global it refers to (which captures the overloadings it
+ *      may see - see <a href="OverloadIndex.html#version(hlt.language.design.types.Symbol)">
+ *      <tt>OverloadIndex.version</tt></a>). No failure is memoized when the head
+ *      of the expected type (as given by <a href="OverloadIndex.html"><tt>OverloadIndex.head</tt></a>)
+ *      is not rigid, since the expected type then constrains too little. The
+ *      context is computed only once the first option of some copy has failed,
+ *      so that checks that never backtrack do not pay for it, and at most
+ *      64 contexts are remembered.
+ * </ul>
+ * The static counters <tt>backtracks()</tt>, <tt>memoHits()</tt>, and
+ * <tt>prefilterRejects()</tt> report how often each case occurred.
  */
 public class UndecidedExpression extends ProtoExpression
 {
   private Expression _fstOption;
   private Expression _sndOption;
   private Expression _actualChoice;
+  private Decision _decision = new Decision();
 
   public UndecidedExpression (Expression first, Expression second)
     {
@@ -43,15 +76,22 @@ public class UndecidedExpression extends ProtoExpression
       _sndOption = second.setExtent(this);
     }
 
+  private UndecidedExpression (Expression first, Expression second, Decision decision)
+    {
+      this(first,second);
+      _decision = decision;
+    }
+
   public final Expression copy ()
     {
-      return new UndecidedExpression(_fstOption.copy(),_sndOption.copy());
+      return new UndecidedExpression(_fstOption.copy(),_sndOption.copy(),_decision);
     }
 
   public final Expression typedCopy ()
     {
       return new UndecidedExpression(_fstOption.typedCopy(),
-                                     _sndOption.typedCopy()).addTypes(this);
+                                     _sndOption.typedCopy(),
+                                     _decision).addTypes(this);
     }
 
   public final int numberOfSubexpressions ()
@@ -76,9 +116,13 @@ public class UndecidedExpression extends ProtoExpression
       switch (n)
         {
         case 0:
+          if (_actualChoice == _fstOption)
+            _actualChoice = expression;
           _fstOption = expression;
           break;
         case 1:
+          if (_actualChoice == _sndOption)
+            _actualChoice = expression;
           _sndOption = expression;
           break;
         default:
@@ -127,13 +171,6 @@ public class UndecidedExpression extends ProtoExpression
       _actualChoice.sanitizeSorts(enclosure);
     }
 
-  public final Expression shiftOffsets (int intShift, int realShift, int objectShift,
-                                        int intDepth, int realDepth, int objectDepth)
-    {
-      return _actualChoice.shiftOffsets(intShift,realShift,objectShift,
-                                        intDepth,realDepth,objectDepth);
-    }
-
   /**
    * Type-checking an <tt>UndecidedExpression</tt> works as follows:
    * <ol>
@@ -156,22 +193,194 @@ public class UndecidedExpression extends ProtoExpression
    * selected  option will be considered. This is fine for this construct's purpose since
    * the decision to choose between the two options must depend only on the syntactic nature
    * of the two expressions, and not the preceding typing context. Hence, a second pass of
-   * type-checking is bound to give the same choice.
+   * type-checking is bound to give the same choice. For the same reason, the first option
+   * is not tried at all if it is rejected by the structural pre-filter, or if it has already
+   * failed for a copy of this expression in the same typing context.
    */
   public final void typeCheck (TypeChecker typeChecker) throws TypingErrorException
     {
       if (typeCheckLocked()) return;
 
+      // the context is only worth computing once some copy has failed:
+      String context = _decision.isEmpty() ? null : _context();
+
+      if (context != null && _decision.hasFailed(context))
+        {
+          _MEMO_HITS.incrementAndGet();
+          (_actualChoice = _sndOption).typeCheck(typeRef(),typeChecker);
+          return;
+        }
+
+      if (_isRejected(_fstOption,typeRef().value()))
+        {
+          _PREFILTER_REJECTS.incrementAndGet();
+          (_actualChoice = _sndOption).typeCheck(typeRef(),typeChecker);
+          return;
+        }
+
       typeChecker.pushCutPoint();
       try
         {
-          (_actualChoice = _fstOption).typeCheck(_type,typeChecker);
+          (_actualChoice = _fstOption).typeCheck(typeRef(),typeChecker);
           typeChecker.popCutPoint();
         }
       catch (TypingErrorException error)
         {
+          _BACKTRACKS.incrementAndGet();
           typeChecker.undoCutPoint(); // this will also pop the cut-point
-          (_actualChoice = _sndOption).typeCheck(_type,typeChecker);
+          // the context is keyed once the failed attempt has been undone:
+          if (context == null)
+            context = _context();
+          if (context != null)
+            _decision.setFailed(context);
+          (_actualChoice = _sndOption).typeCheck(typeRef(),typeChecker);
+        }
+    }
+
+  /**
+   * Returns the key of the typing context of the first option (see above), or
+   * <tt>null</tt> if its failure must not be memoized.
+   */
+  private final String _context ()
+    {
+      if (OverloadIndex.head(typeRef()) == -1)
+        return null;
+
+      ArrayList types = new ArrayList();
+      StringBuilder globals = new StringBuilder();
+
+      _collectContext(_fstOption,new HashSet(),new HashSet(),types,globals);
+
+      Type type = typeRef().value();
+
+      if (!types.isEmpty())
+        {
+          Type[] domains = new Type[types.size()];
+          for (int i=domains.length; i-->0;)
+            domains[i] = (Type)types.get(i);
+          type = new FunctionType(domains,type).setNoCurrying();
+        }
+
+      return type.copy().standardize() + globals.toString();
+    }
+
+  /**
+   * Collects the types of the free locals of the specified expression in order of
+   * first occurrence, and the names and type table versions of the globals it refers to.
+   */
+  private static final void _collectContext (Expression expression, HashSet bound, HashSet seen,
+                                             ArrayList types, StringBuilder globals)
+    {
+      if (expression instanceof Local)
+        {
+          Parameter parameter = ((Local)expression).parameter();
+          if (!bound.contains(parameter) && seen.add(parameter))
+            types.add(parameter.typeRef());
+          return;
+        }
+
+      if (expression instanceof Global)
+        {
+          Symbol symbol = ((Global)expression).symbol();
+          globals.append(' ').append(symbol).append('/').append(OverloadIndex.version(symbol));
+          return;
+        }
+
+      Parameter[] parameters = expression.parameters();
+      if (parameters != null)
+        for (int i=parameters.length; i-->0;)
+          bound.add(parameters[i]);
+
+      for (int i=0; i<expression.numberOfSubexpressions(); i++)
+        _collectContext(expression.subexpression(i),bound,seen,types,globals);
+    }
+
+  /**
+   * Returns <tt>true</tt> iff the specified option's syntax alone shows that
+   * it cannot have the specified type.
+   */
+  private static final boolean _isRejected (Expression option, Type type)
+    {
+      if (OverloadIndex.head(type) == -1)
+        return false;
+
+      if (option instanceof Abstraction)
+        return type.kind() != Type.FUNCTION;
+
+      if (option instanceof NewCollection)
+        return type.kind() != ((NewCollection)option).kind();
+
+      return false;
+    }
+
+  private static final AtomicLong _BACKTRACKS = new AtomicLong();
+  private static final AtomicLong _MEMO_HITS = new AtomicLong();
+  private static final AtomicLong _PREFILTER_REJECTS = new AtomicLong();
+
+  /**
+   * Returns the number of times a first option was type-checked and failed.
+   */
+  public static final long backtracks ()
+    {
+      return _BACKTRACKS.get();
+    }
+
+  /**
+   * Returns the number of times a first option was skipped because it had
+   * already failed for a copy of the same expression in the same context.
+   */
+  public static final long memoHits ()
+    {
+      return _MEMO_HITS.get();
+    }
+
+  /**
+   * Returns the number of times a first option was skipped by the structural
+   * pre-filter.
+   */
+  public static final long prefilterRejects ()
+    {
+      return _PREFILTER_REJECTS.get();
+    }
+
+  public static final void resetCounters ()
+    {
+      _BACKTRACKS.set(0);
+      _MEMO_HITS.set(0);
+      _PREFILTER_REJECTS.set(0);
+    }
+
+  /**
+   * The maximum number of failure contexts recorded by a decision.
+   */
+  private static final int _MAX_FAILURES = 64;
+
+  /**
+   * This records the typing contexts in which the first option of an undecided
+   * expression (and of all its copies) has failed. It is bounded: when it is
+   * full, the contexts recorded so far are forgotten, which costs at worst
+   * trying a first option again.
+   */
+  private static final class Decision
+    {
+      private final ConcurrentHashMap _failures = new ConcurrentHashMap();
+
+      final boolean isEmpty ()
+        {
+          return _failures.isEmpty();
+        }
+
+      final boolean hasFailed (String context)
+        {
+          return _failures.containsKey(context);
+        }
+
+      final void setFailed (String context)
+        {
+          if (_failures.size() >= _MAX_FAILURES)
+            _failures.clear();
+
+          _failures.put(context,Boolean.TRUE);
         }
     }
 
@@ -0,0 +1,220 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.design.kernel;
+
+/**
+ * @version     Last modified on Tue Oct 20 11:05:48 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+import hlt.language.design.types.*;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * This is a stress test processing a same batch of definitions against shared
+ * symbol tables, once sequentially and then concurrently, and checking that the
+ * checked types and compiled code of all the definitions are the same both ways.
+ * The batch consists of:
+ * <ul>
+ * <li> <tt>f</tt>, overloaded on <tt>int</tt>, <tt>real</tt>, <tt>string</tt>, and
+ *      pairs of <tt>int</tt>s - enough overloads for <tt>f</tt> to be indexed
+ *      (see <a href="OverloadIndex.html"><tt>OverloadIndex</tt></a>);
+ * <li> for each <tt>i</tt>, <tt>g<sub>i</sub> = f(i)</tt>, <tt>r<sub>i</sub> = f(i.5)</tt>,
+ *      and <tt>s<sub>i</sub> = f("i")</tt>, which select each overload of <tt>f</tt>;
+ * <li> for each <tt>i</tt>, <tt>u<sub>i</sub></tt>, an undecided expression whose
+ *      first option <tt>f("0",0)</tt> fails and whose second is <tt>f(0)</tt> -
+ *      all the <tt>u<sub>i</sub></tt> are copies of a same undecided expression, so
+ *      they share its memo of failures (see <a href="UndecidedExpression.html">
+ *      <tt>UndecidedExpression</tt></a>);
+ * <li> for each <tt>i</tt>, <tt>k<sub>i</sub> = fun x:int -> g<sub>i</sub> + x</tt>
+ *      (written as a sequence), which depends on <tt>g<sub>i</sub></tt>.
+ * </ul>
+ * In the concurrent run, the names of the definitions are sanitized (which
+ * numbers new parameters with <tt>Parameter</tt>'s shared counter), their sorts
+ * sanitized, and their code compiled, on a pool of threads, each thread with its
+ * own compiler; they are type-checked by a <a href="ParallelTypeChecker.html">
+ * <tt>ParallelTypeChecker</tt></a> on the same number of threads.
+ *
+ * <p>
+ *
+ * It is run as <tt>java hlt.language.design.kernel.ConcurrentCompilationStressTest
+ * [threads [size [rounds]]]</tt>, and exits with status <tt>1</tt> on the first
+ * difference with the sequential run.
+ */
+public class ConcurrentCompilationStressTest
+{
+  public static void main (String[] args) throws Exception
+    {
+      int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+      int size = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+      int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+
+      String[] expected = _run(1,size);
+
+      for (int round=0; round<rounds; round++)
+        {
+          String[] actual = _run(threads,size);
+
+          for (int i=0; i<expected.length; i++)
+            if (!expected[i].equals(actual[i]))
+              {
+                System.err.println("round "+round+": sequentially, "+expected[i]);
+                System.err.println("round "+round+": concurrently, "+actual[i]);
+                System.exit(1);
+              }
+        }
+
+      System.out.println("processed "+rounds+" rounds of "+expected.length
+                         +" definitions on "+threads+" threads");
+    }
+
+  /**
+   * Processes the batch of definitions of the specified size on new tables with
+   * the specified number of threads, and returns for each definition, in batch
+   * order, its name, checked type, and compiled code.
+   */
+  private static final String[] _run (int threads, int size) throws Exception
+    {
+      final Tables tables = new Tables();
+      Constant.initialize(tables);
+
+      FrontEnd frontEnd = new FrontEnd(new TypeChecker(),new Compiler());
+      frontEnd.process(_overload(tables,Type.INT()));
+      frontEnd.process(_overload(tables,Type.REAL()));
+      frontEnd.process(_overload(tables,Type.STRING));
+      frontEnd.process(new Definition(tables,"f",
+                                      new Abstraction(new Parameter[] { new Parameter("x",Type.INT()),
+                                                                        new Parameter("y",Type.INT()) },
+                                                      new Dummy("x"))));
+
+      final Definition[] definitions = _batch(tables,size);
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+      try
+        {
+          _forAll(pool,threads,definitions.length,new Job()
+            {
+              public void run (int i)
+                {
+                  definitions[i] = (Definition)Sanitizer.sanitizeNames(definitions[i]);
+                }
+            });
+
+          ParallelTypeChecker checker = new ParallelTypeChecker(new ParallelTypeChecker.TypeCheckerFactory()
+            {
+              public TypeChecker newTypeChecker ()
+                {
+                  return new TypeChecker();
+                }
+            },threads);
+
+          for (int i=0; i<definitions.length; i++)
+            checker.add(definitions[i]);
+          checker.typeCheck();
+
+          final Compiler[] compilers = new Compiler[threads];
+          for (int t=0; t<threads; t++)
+            compilers[t] = new Compiler();
+
+          final String[] results = new String[definitions.length];
+
+          _forAll(pool,threads,definitions.length,new Job()
+            {
+              public void run (int i)
+                {
+                  Definition definition = definitions[i];
+                  Sanitizer.sanitizeSorts(definition);
+                  // a slice is compiled by a single thread, hence a single compiler:
+                  compilers[i%compilers.length].compile(definition);
+                  results[i] = definition.symbol()+" : "+definition.checkedType()+" = "
+                             + Arrays.asList(definition.codeEntry().code());
+                }
+            });
+
+          return results;
+        }
+      finally
+        {
+          pool.shutdownNow();
+        }
+    }
+
+  /**
+   * Returns the definition of the identity of <tt>f</tt> on the specified type.
+   */
+  private static final Definition _overload (Tables tables, Type type)
+    {
+      return new Definition(tables,"f",new Abstraction(new Parameter("x",type),new Dummy("x")));
+    }
+
+  private static final Definition[] _batch (Tables tables, int size)
+    {
+      Definition[] definitions = new Definition[5*size];
+
+      UndecidedExpression undecided
+        = new UndecidedExpression(new Application(new Dummy(tables,"f"),
+                                                  new StringConstant("0"),new Int(0)),
+                                  new Application(new Dummy(tables,"f"),new Int(0)));
+
+      for (int i=0; i<size; i++)
+        {
+          definitions[5*i]   = new Definition(tables,"g"+i,
+                                              new Application(new Dummy(tables,"f"),new Int(i)));
+          definitions[5*i+1] = new Definition(tables,"r"+i,
+                                              new Application(new Dummy(tables,"f"),new Real(i+0.5)));
+          definitions[5*i+2] = new Definition(tables,"s"+i,
+                                              new Application(new Dummy(tables,"f"),
+                                                              new StringConstant(String.valueOf(i))));
+          definitions[5*i+3] = new Definition(tables,"u"+i,undecided.copy());
+          definitions[5*i+4] = new Definition(tables,"k"+i,
+                                              new Abstraction(new Parameter("x",Type.INT()),
+                                                              new Sequence(new Dummy(tables,"g"+i),
+                                                                           new Dummy("x"))));
+        }
+
+      return definitions;
+    }
+
+  /**
+   * This is the interface of the work done for each definition of a batch.
+   */
+  private static interface Job
+    {
+      public void run (int i);
+    }
+
+  /**
+   * Runs the specified job for each index below the specified size on the
+   * specified pool, with the indices split in the specified number of slices,
+   * and rethrows the first failure if any.
+   */
+  private static final void _forAll (ExecutorService pool, int slices, final int size, final Job job)
+    throws Exception
+    {
+      Future[] futures = new Future[slices];
+
+      for (int t=0; t<slices; t++)
+        {
+          final int slice = t;
+          final int count = slices;
+          futures[t] = pool.submit(new Runnable()
+            {
+              public void run ()
+                {
+                  for (int i=slice; i<size; i+=count)
+                    job.run(i);
+                }
+            });
+        }
+
+      for (int t=0; t<slices; t++)
+        futures[t].get();
+    }
+}
@@ -0,0 +1,54 @@
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+// PLEASE DO NOT EDIT WITHOUT THE EXPLICIT CONSENT OF THE AUTHOR! \\
+//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\//\\
+
+package hlt.language.design.kernel;
+
+/**
+ * @version     Last modified on Tue Oct 20 10:12:31 2026 by hak
+ * @author      <a href="mailto:hak@acm.org">Hassan A&iuml;t-Kaci</a>
+ * @copyright   &copy; <a href="http://www.hassan-ait-kaci.net/">by the author</a>
+ */
+
+/**
+ * This is a regression test for <a href="LetSimplifier.html"><tt>LetSimplifier</tt></a>:
+ * in <tt>let x = y in (fun y -> x + y)</tt>, substituting the outer <tt>y</tt> for
+ * <tt>x</tt> would let the inner <tt>y</tt> capture it, so the body must be found to
+ * rebind <tt>y</tt> - and the <tt>Let</tt> must not be deemed trivial. It is run as
+ * <tt>java hlt.language.design.kernel.LetSimplifierTest</tt>, and exits with status
+ * <tt>1</tt> on failure.
+ */
+public class LetSimplifierTest
+{
+  public static void main (String[] args)
+    {
+      Parameter outerY = new Parameter("y");
+      Parameter x = new Parameter("x");
+      Parameter innerY = new Parameter("y");
+      Parameter z = new Parameter("z");
+
+      // let x = y in (fun y -> x + y) - a sequence stands for the sum, which would
+      // need a global symbol table; only the binding structure matters here:
+      Let shadowing = new Let(x,new Local(outerY),
+                              new Abstraction(innerY,
+                                              new Sequence(new Local(x),new Local(innerY))));
+
+      // let x = y in (fun z -> x + z)
+      Let plain = new Let(x,new Local(outerY),
+                          new Abstraction(z,new Sequence(new Local(x),new Local(z))));
+
+      if (!LetSimplifier.rebinds(((Scope)shadowing.function()).body(),"y"))
+        _fail("the inner binder of y is not seen in "+shadowing);
+
+      if (LetSimplifier.rebinds(((Scope)plain.function()).body(),"y"))
+        _fail("y is wrongly deemed rebound in "+plain);
+
+      System.out.println("let simplifier: ok");
+    }
+
+  private static final void _fail (String message)
+    {
+      System.err.println("let simplifier: "+message);
+      System.exit(1);
+    }
+}